@@ -0,0 +1,25 @@
+package org.folio.idmconnect;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Exponential backoff with jitter. */
+public class Backoff {
+
+  private Backoff() {}
+
+  /**
+   * Returns the delay before the given retry: the base delay doubled for every further retry and
+   * capped at the maximum, of which a random part of up to one half is dropped so that clients
+   * failing at the same time do not retry at the same time.
+   *
+   * @param retry number of the retry, starting with 1
+   */
+  public static long delay(int retry, long baseDelay, long maxDelay) {
+    int shift = Math.min(Math.max(retry - 1, 0), 30);
+    long delay = Math.min(maxDelay, baseDelay << shift);
+    if (delay <= 1) {
+      return Math.max(delay, 0);
+    }
+    return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+}
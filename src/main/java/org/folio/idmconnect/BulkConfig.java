@@ -0,0 +1,33 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.IdmClientConfig.getIntEnvVar;
+
+/**
+ * Configuration of bulk operations on contracts.
+ *
+ * @param chunkSize maximum number of ids handled by one database statement
+ * @param concurrency maximum number of statements, and thus database connections, used at the same
+ *     time by one bulk request
+ */
+public record BulkConfig(int chunkSize, int concurrency) {
+
+  public static final String ENVVAR_BULK_CHUNK_SIZE = "BULK_CHUNK_SIZE";
+  public static final String ENVVAR_BULK_CONCURRENCY = "BULK_CONCURRENCY";
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+  public static final int DEFAULT_CONCURRENCY = 2;
+
+  public BulkConfig {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException(ENVVAR_BULK_CHUNK_SIZE + " must be positive.");
+    }
+    if (concurrency < 1) {
+      throw new IllegalArgumentException(ENVVAR_BULK_CONCURRENCY + " must be positive.");
+    }
+  }
+
+  public static BulkConfig createFromEnvVars() {
+    return new BulkConfig(
+        getIntEnvVar(ENVVAR_BULK_CHUNK_SIZE, DEFAULT_CHUNK_SIZE),
+        getIntEnvVar(ENVVAR_BULK_CONCURRENCY, DEFAULT_CONCURRENCY));
+  }
+}
@@ -0,0 +1,160 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+
+import io.vertx.core.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker for the calls of one {@link IdmOperation}.
+ *
+ * <p>The circuit is closed while the IDM answers. After {@code failureThreshold} consecutive
+ * failures it opens and calls fail fast with a 503 without reaching the IDM. After the reset
+ * timeout it is half-open and lets one trial call through: the circuit closes if the call succeeds
+ * and opens again if it fails. A failure is a response with a 5xx status, which {@link
+ * IdmClientImpl} also returns if the IDM cannot be reached, or a call slower than the slow call
+ * duration.
+ *
+ * <p>Every change of the state starts a new generation. Only the results of calls admitted in the
+ * current generation count, so that a late result of a call admitted before the circuit opened
+ * cannot close the circuit while the trial call is running, or open it again.
+ */
+public class CircuitBreaker {
+
+  private static final Logger LOG = LogManager.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final IdmOperation operation;
+  private final CircuitBreakerConfig config;
+  private final LongSupplier nanoTime;
+  private State state = State.CLOSED;
+  private long generation;
+  private int failures;
+  private long openedAt;
+  private boolean trialInFlight;
+  private long rejected;
+
+  public CircuitBreaker(IdmOperation operation, CircuitBreakerConfig config) {
+    this(operation, config, System::nanoTime);
+  }
+
+  CircuitBreaker(IdmOperation operation, CircuitBreakerConfig config, LongSupplier nanoTime) {
+    this.operation = operation;
+    this.config = config;
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Calls {@code call} unless the circuit is open.
+   *
+   * @return the result of the call, or a 503 response with a {@code Retry-After} header if the
+   *     circuit is open
+   */
+  public Future<Response> execute(Supplier<Future<Response>> call) {
+    if (!config.isEnabled()) {
+      return call.get();
+    }
+    long admission = acquire();
+    if (admission < 0) {
+      return Future.succeededFuture(
+          Response.status(503)
+              .header(CONTENT_TYPE, TEXT_PLAIN)
+              .header(RETRY_AFTER, -admission)
+              .entity("IDM unavailable, circuit breaker of " + operation + " is open.")
+              .build());
+    }
+    long start = nanoTime.getAsLong();
+    Future<Response> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      future = Future.failedFuture(e);
+    }
+    return future.onComplete(
+        ar ->
+            onResult(admission, ar.succeeded() && ar.result().getStatus() < 500 && !isSlow(start)));
+  }
+
+  public synchronized Stats getStats() {
+    // report an expired open circuit as half-open, like the next call will see it
+    State current = state == State.OPEN && remainingOpenNanos() <= 0 ? State.HALF_OPEN : state;
+    return new Stats(current, failures, rejected);
+  }
+
+  /**
+   * Returns the generation the call is admitted in if it may pass, otherwise the negated seconds
+   * until the circuit may close again.
+   */
+  private synchronized long acquire() {
+    if (state == State.OPEN) {
+      long remaining = remainingOpenNanos();
+      if (remaining > 0) {
+        rejected++;
+        return -Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999_999_999));
+      }
+      setState(State.HALF_OPEN);
+      trialInFlight = false;
+    }
+    if (state == State.HALF_OPEN) {
+      if (trialInFlight) {
+        rejected++;
+        return -1;
+      }
+      trialInFlight = true;
+    }
+    return generation;
+  }
+
+  private synchronized void onResult(long admittedIn, boolean success) {
+    if (admittedIn != generation) {
+      // late result of a call admitted in an earlier state
+      return;
+    }
+    if (success) {
+      if (state == State.HALF_OPEN) {
+        LOG.info("Circuit breaker of {} closed", operation);
+        setState(State.CLOSED);
+      }
+      failures = 0;
+      return;
+    }
+    failures++;
+    if (state == State.HALF_OPEN || failures >= config.failureThreshold()) {
+      LOG.warn("Circuit breaker of {} opened after {} failure(s)", operation, failures);
+      setState(State.OPEN);
+      openedAt = nanoTime.getAsLong();
+    }
+  }
+
+  private void setState(State next) {
+    state = next;
+    generation++;
+  }
+
+  private boolean isSlow(long start) {
+    return config.slowCallDuration() > 0
+        && nanoTime.getAsLong() - start > TimeUnit.MILLISECONDS.toNanos(config.slowCallDuration());
+  }
+
+  private long remainingOpenNanos() {
+    return openedAt + TimeUnit.MILLISECONDS.toNanos(config.resetTimeout()) - nanoTime.getAsLong();
+  }
+
+  /**
+   * @param failures number of consecutive failures
+   * @param rejected number of calls that failed fast because the circuit was open
+   */
+  public record Stats(State state, int failures, long rejected) {}
+}
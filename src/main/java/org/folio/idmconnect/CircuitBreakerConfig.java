@@ -0,0 +1,66 @@
+package org.folio.idmconnect;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration of the circuit breaker of one {@link IdmOperation}.
+ *
+ * @param failureThreshold number of consecutive failures that open the circuit, 0 to disable the
+ *     circuit breaker
+ * @param resetTimeout milliseconds the circuit stays open before a trial call is let through
+ * @param slowCallDuration milliseconds after which a call counts as failure even if it succeeds, 0
+ *     to count failed calls only
+ */
+public record CircuitBreakerConfig(int failureThreshold, int resetTimeout, int slowCallDuration) {
+
+  public static final String ENVVAR_IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD =
+      "IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD";
+  public static final String ENVVAR_IDM_CIRCUIT_BREAKER_RESET_TIMEOUT =
+      "IDM_CIRCUIT_BREAKER_RESET_TIMEOUT";
+  public static final String ENVVAR_IDM_CIRCUIT_BREAKER_SLOW_CALL_DURATION =
+      "IDM_CIRCUIT_BREAKER_SLOW_CALL_DURATION";
+  public static final CircuitBreakerConfig DEFAULT = new CircuitBreakerConfig(5, 30000, 0);
+
+  public CircuitBreakerConfig {
+    if (failureThreshold < 0) {
+      throw new IllegalArgumentException(
+          ENVVAR_IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD + " must not be negative.");
+    }
+    if (resetTimeout < 1) {
+      throw new IllegalArgumentException(
+          ENVVAR_IDM_CIRCUIT_BREAKER_RESET_TIMEOUT + " must be positive.");
+    }
+    if (slowCallDuration < 0) {
+      throw new IllegalArgumentException(
+          ENVVAR_IDM_CIRCUIT_BREAKER_SLOW_CALL_DURATION + " must not be negative.");
+    }
+  }
+
+  /**
+   * Reads the configuration of the operation from the environment variables. A variable with the
+   * operation appended, like {@code IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD_SEARCH}, overrides the
+   * one for all operations.
+   */
+  public static CircuitBreakerConfig createFromEnvVars(IdmOperation operation) {
+    return new CircuitBreakerConfig(
+        operation.getIntEnvVar(
+            ENVVAR_IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD, DEFAULT.failureThreshold()),
+        operation.getIntEnvVar(ENVVAR_IDM_CIRCUIT_BREAKER_RESET_TIMEOUT, DEFAULT.resetTimeout()),
+        operation.getIntEnvVar(
+            ENVVAR_IDM_CIRCUIT_BREAKER_SLOW_CALL_DURATION, DEFAULT.slowCallDuration()));
+  }
+
+  /** Reads the configuration of all operations from the environment variables. */
+  public static Map<IdmOperation, CircuitBreakerConfig> createFromEnvVars() {
+    Map<IdmOperation, CircuitBreakerConfig> configs = new EnumMap<>(IdmOperation.class);
+    for (IdmOperation operation : IdmOperation.values()) {
+      configs.put(operation, createFromEnvVars(operation));
+    }
+    return configs;
+  }
+
+  public boolean isEnabled() {
+    return failureThreshold > 0;
+  }
+}
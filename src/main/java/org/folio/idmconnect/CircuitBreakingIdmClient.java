@@ -0,0 +1,77 @@
+package org.folio.idmconnect;
+
+import io.vertx.core.Future;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+import org.folio.rest.jaxrs.model.Contract;
+
+/**
+ * Decorates an {@link IdmClient} with one {@link CircuitBreaker} per {@link IdmOperation}.
+ *
+ * <p>Operations whose IDM URL is not configured bypass the circuit breaker, so that the error about
+ * the missing environment variable is not replaced by the open circuit.
+ */
+public class CircuitBreakingIdmClient implements IdmClient {
+
+  private final IdmClient idmClient;
+  private final IdmClientConfig config;
+  private final Map<IdmOperation, CircuitBreaker> circuitBreakers;
+
+  public CircuitBreakingIdmClient(
+      IdmClient idmClient,
+      IdmClientConfig config,
+      Map<IdmOperation, CircuitBreaker> circuitBreakers) {
+    this.idmClient = idmClient;
+    this.config = config;
+    this.circuitBreakers = circuitBreakers;
+  }
+
+  private Future<Response> execute(
+      IdmOperation operation, String url, Supplier<Future<Response>> call) {
+    if (url == null) {
+      return call.get();
+    }
+    return circuitBreakers.get(operation).execute(call);
+  }
+
+  @Override
+  public Future<Response> search(String firstName, String lastName, String dateOfBirth) {
+    return execute(
+        IdmOperation.SEARCH,
+        config.getIdmUrl(),
+        () -> idmClient.search(firstName, lastName, dateOfBirth));
+  }
+
+  @Override
+  public Future<Response> putContract(Contract contract) {
+    return execute(
+        IdmOperation.PUT_CONTRACT,
+        config.getIdmContractUrl(),
+        () -> idmClient.putContract(contract));
+  }
+
+  @Override
+  public Future<Response> postContract(Contract contract) {
+    return execute(
+        IdmOperation.POST_CONTRACT,
+        config.getIdmContractUrl(),
+        () -> idmClient.postContract(contract));
+  }
+
+  @Override
+  public Future<Response> postUBReaderNumber(String unilogin, String readerNumber) {
+    return execute(
+        IdmOperation.POST_UB_READER_NUMBER,
+        config.getIdmReaderNumberUrl(),
+        () -> idmClient.postUBReaderNumber(unilogin, readerNumber));
+  }
+
+  @Override
+  public Future<Response> deleteUBReaderNumber(String unilogin) {
+    return execute(
+        IdmOperation.DELETE_UB_READER_NUMBER,
+        config.getIdmReaderNumberUrl(),
+        () -> idmClient.deleteUBReaderNumber(unilogin));
+  }
+}
@@ -0,0 +1,72 @@
+package org.folio.idmconnect;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.core.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.Contract;
+
+/**
+ * Decorates an {@link IdmClient} so that concurrent searches with the same parameters share one
+ * search of the decorated client; each caller gets its own copy of the response.
+ *
+ * <p>It is the outermost decorator of the shared client, so a shared search passes the {@link
+ * CircuitBreaker} and the {@link RetryingIdmClient} once: its outcome is counted once and its
+ * retries are made once for all callers.
+ */
+public class CoalescingIdmClient implements IdmClient {
+
+  private static final Logger LOG = LogManager.getLogger(CoalescingIdmClient.class);
+
+  private final IdmClient idmClient;
+  private final Map<SearchKey, Future<Response>> inFlightSearches = new ConcurrentHashMap<>();
+
+  public CoalescingIdmClient(IdmClient idmClient) {
+    this.idmClient = idmClient;
+  }
+
+  @Override
+  public Future<Response> search(String firstName, String lastName, String dateOfBirth) {
+    SearchKey key = new SearchKey(firstName, lastName, IdmClientImpl.toBasicIsoDate(dateOfBirth));
+    Promise<Response> promise = Promise.promise();
+    Future<Response> inFlight = inFlightSearches.putIfAbsent(key, promise.future());
+    if (inFlight == null) {
+      inFlight = promise.future();
+      idmClient
+          .search(firstName, lastName, dateOfBirth)
+          .onComplete(
+              ar -> {
+                inFlightSearches.remove(key, promise.future());
+                promise.handle(ar);
+              });
+    } else {
+      LOG.debug("Joining in-flight IDM search");
+    }
+    return inFlight.map(response -> Response.fromResponse(response).build());
+  }
+
+  @Override
+  public Future<Response> putContract(Contract contract) {
+    return idmClient.putContract(contract);
+  }
+
+  @Override
+  public Future<Response> postContract(Contract contract) {
+    return idmClient.postContract(contract);
+  }
+
+  @Override
+  public Future<Response> postUBReaderNumber(String unilogin, String readerNumber) {
+    return idmClient.postUBReaderNumber(unilogin, readerNumber);
+  }
+
+  @Override
+  public Future<Response> deleteUBReaderNumber(String unilogin) {
+    return idmClient.deleteUBReaderNumber(unilogin);
+  }
+
+  private record SearchKey(String firstName, String lastName, String dateOfBirth) {}
+}
@@ -7,12 +7,18 @@ import static org.folio.idmconnect.IdmClientConfig.ENVVAR_IDM_URL;
 public class Constants {
 
   public static final String TABLE_NAME_CONTRACTS = "contract";
+  public static final String TABLE_NAME_OUTBOX = "transmission_outbox";
   public static final String JSONB_FIELD_UNILOGIN = "uniLogin";
   public static final String JSONB_FIELD_LIBRARYCARD = "libraryCard";
+  public static final String JSONB_FIELD_STATUS = "status";
   public static final String BASE_PATH_CONTRACTS = "/idm-connect/contract"; // NOSONAR
   public static final String BASE_PATH_SEARCHIDM = "/idm-connect/searchidm"; // NOSONAR
   public static final String BASE_PATH_READER_NUMDER = "/idm-connect/ubreadernumber"; // NOSONAR
+  public static final String BASE_PATH_METRICS = "/idm-connect/metrics"; // NOSONAR
+  public static final String BASE_PATH_EXPORT = "/idm-connect/export/contract"; // NOSONAR
   public static final String PATH_BULK_DELETE = "/bulk-delete"; // NOSONAR
+  public static final String PATH_BULK_TRANSMIT = "/bulk-transmit"; // NOSONAR
+  public static final String PATH_BULK_IMPORT = "/bulk-import"; // NOSONAR
   public static final String MSG_IDM_URL_NOT_SET = createMsgEnvVarNotSet(ENVVAR_IDM_URL);
   public static final String MSG_IDM_CONTRACT_URL_NOT_SET =
       createMsgEnvVarNotSet(ENVVAR_IDM_CONTRACT_URL);
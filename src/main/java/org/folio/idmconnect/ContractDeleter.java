@@ -0,0 +1,143 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.Constants.JSONB_FIELD_STATUS;
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.folio.cql2pgjson.CQL2PgJSON;
+import org.folio.rest.jaxrs.model.BulkDeleteResponse;
+import org.folio.rest.jaxrs.model.Contract.Status;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Deletes walk-in contracts with one set-based statement per chunk of ids instead of one statement
+ * per id. At most {@link BulkConfig#concurrency()} chunks are deleted at the same time, so that a
+ * large request does not take all connections of the tenant's pool.
+ */
+public class ContractDeleter {
+
+  private final PostgresClient pgClient;
+  private final BulkConfig config;
+  private final String table;
+  private final String deleteSql;
+
+  public ContractDeleter(PostgresClient pgClient, String tenantId, BulkConfig config) {
+    this.pgClient = pgClient;
+    this.config = config;
+    this.table = PostgresClient.convertToPsqlStandard(tenantId) + "." + TABLE_NAME_CONTRACTS;
+    // contracts in transmission are kept, so that the result of the IDM can be written
+    this.deleteSql =
+        "DELETE FROM "
+            + table
+            + " WHERE id = ANY($1) AND jsonb->>'"
+            + JSONB_FIELD_STATUS
+            + "' IS DISTINCT FROM $2 RETURNING id";
+  }
+
+  /**
+   * Deletes the contracts with the given ids in chunks of {@link BulkConfig#chunkSize()}, except
+   * contracts with status {@code transmission_in_progress}.
+   *
+   * @return the ids that could not be deleted: invalid and unknown ids, contracts in transmission
+   *     and repetitions of an id
+   */
+  public Future<List<String>> deleteAll(List<String> ids) {
+    List<UUID> uuids = new ArrayList<>();
+    for (String id : new LinkedHashSet<>(ids)) {
+      UUID uuid = ContractTransmitter.toUuid(id);
+      if (uuid != null) {
+        uuids.add(uuid);
+      }
+    }
+    List<List<UUID>> chunks = new ArrayList<>();
+    for (int i = 0; i < uuids.size(); i += config.chunkSize()) {
+      chunks.add(uuids.subList(i, Math.min(i + config.chunkSize(), uuids.size())));
+    }
+    Set<String> deletedIds = new HashSet<>();
+    return FutureUtils.mapWithConcurrency(
+            chunks, config.concurrency(), chunk -> deleteChunk(chunk).map(deletedIds::addAll))
+        .map(
+            v -> {
+              // each deleted id counts once, like a DELETE per id would
+              List<String> failedIds = new ArrayList<>();
+              for (String id : ids) {
+                if (!deletedIds.remove(normalize(id))) {
+                  failedIds.add(id);
+                }
+              }
+              return failedIds;
+            });
+  }
+
+  /**
+   * Deletes the contracts with status {@code draft} matching the CQL query with a single statement.
+   * Matching contracts with another status are reported as failed.
+   *
+   * @return a failed future with a {@code QueryValidationException} or {@code FieldException} if
+   *     the query is invalid
+   */
+  public Future<BulkDeleteResponse> deleteByQuery(String cqlQuery) {
+    String where;
+    try {
+      where = new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb").toSql(cqlQuery).getWhere();
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+    // the status is checked on the deleted row itself, so that it is evaluated again if the row
+    // is changed concurrently
+    String sql =
+        "WITH matched AS (SELECT id FROM "
+            + table
+            + " "
+            + TABLE_NAME_CONTRACTS
+            + " WHERE "
+            + where
+            + "), deleted AS (DELETE FROM "
+            + table
+            + " t USING matched m WHERE t.id = m.id AND t.jsonb->>'"
+            + JSONB_FIELD_STATUS
+            + "' = $1 RETURNING t.id) SELECT (SELECT count(*) FROM matched) AS requested,"
+            + " (SELECT count(*) FROM deleted) AS deleted, ARRAY(SELECT id FROM matched"
+            + " EXCEPT SELECT id FROM deleted) AS failed";
+    return pgClient
+        .execute(sql, Tuple.of(Status.DRAFT.value()))
+        .map(
+            rows -> {
+              Row row = rows.iterator().next();
+              List<String> failedIds =
+                  Arrays.stream(row.getArrayOfUUIDs("failed")).map(UUID::toString).toList();
+              return new BulkDeleteResponse()
+                  .withRequested(row.getLong("requested").intValue())
+                  .withDeleted(row.getLong("deleted").intValue())
+                  .withFailed(failedIds.size())
+                  .withFailedItems(failedIds);
+            });
+  }
+
+  private Future<List<String>> deleteChunk(List<UUID> chunk) {
+    return pgClient
+        .execute(
+            deleteSql,
+            Tuple.of(chunk.toArray(UUID[]::new), Status.TRANSMISSION_IN_PROGRESS.value()))
+        .map(
+            rows -> {
+              List<String> deletedIds = new ArrayList<>(rows.rowCount());
+              rows.forEach(row -> deletedIds.add(row.getUUID(0).toString()));
+              return deletedIds;
+            });
+  }
+
+  private static String normalize(String id) {
+    UUID uuid = ContractTransmitter.toUuid(id);
+    return uuid == null ? id : uuid.toString();
+  }
+}
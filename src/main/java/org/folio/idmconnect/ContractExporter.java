@@ -0,0 +1,233 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.cql2pgjson.CQL2PgJSON;
+import org.folio.cql2pgjson.model.SqlSelect;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Writes the contracts matching a CQL query straight to an HTTP response.
+ *
+ * <p>The rows are read from a cursor within a transaction, {@link BulkConfig#chunkSize()} rows at a
+ * time. Reading pauses while the write queue of the response is full, so memory use does not depend
+ * on the number of contracts. The transaction holds a database connection for the whole download;
+ * if the client reads nothing for {@link #IDLE_IN_TRANSACTION_TIMEOUT} ms, the database ends it and
+ * the download is aborted.
+ */
+public class ContractExporter {
+
+  /** Output format of an export. */
+  public enum Format {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv; charset=utf-8", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    Format(String contentType, String extension) {
+      this.contentType = contentType;
+      this.extension = extension;
+    }
+
+    /** Returns the format with the given name, ignoring case, or null if there is none. */
+    public static Format fromName(String name) {
+      for (Format format : values()) {
+        if (format.extension.equalsIgnoreCase(name)) {
+          return format;
+        }
+      }
+      return null;
+    }
+  }
+
+  /** CSV columns and the JSON path of their values within a contract. */
+  static final List<String[]> CSV_COLUMNS =
+      List.of(
+          new String[] {"id"},
+          new String[] {"status"},
+          new String[] {"personal", "firstName"},
+          new String[] {"personal", "lastName"},
+          new String[] {"personal", "academicTitle"},
+          new String[] {"personal", "dateOfBirth"},
+          new String[] {"personal", "email"},
+          new String[] {"personal", "address", "addressLine1"},
+          new String[] {"personal", "address", "addressLine2"},
+          new String[] {"personal", "address", "zipCode"},
+          new String[] {"personal", "address", "city"},
+          new String[] {"personal", "address", "country"},
+          new String[] {"libraryCard"},
+          new String[] {"uniLogin"},
+          new String[] {"beginDate"},
+          new String[] {"endDate"},
+          new String[] {"comment"});
+
+  /**
+   * Milliseconds the export transaction may wait for a slow client before the database ends it, so
+   * that a stalled download does not hold a pooled database connection indefinitely.
+   */
+  static final int IDLE_IN_TRANSACTION_TIMEOUT = 60000;
+
+  private static final Logger LOG = LogManager.getLogger(ContractExporter.class);
+
+  private final PostgresClient pgClient;
+  private final String table;
+  private final BulkConfig config;
+
+  public ContractExporter(PostgresClient pgClient, String tenantId, BulkConfig config) {
+    this.pgClient = pgClient;
+    this.table = PostgresClient.convertToPsqlStandard(tenantId) + "." + TABLE_NAME_CONTRACTS;
+    this.config = config;
+  }
+
+  /**
+   * Writes the contracts matching the CQL query to the response and ends it.
+   *
+   * @return a failed future with a {@code QueryValidationException} or {@code FieldException} if
+   *     the query is invalid; if the head of the response has not been written when the export
+   *     fails, nothing has been written and the caller must end the response, otherwise it has been
+   *     reset
+   */
+  public Future<Void> export(String cqlQuery, Format format, HttpServerResponse response) {
+    String sql;
+    try {
+      SqlSelect select =
+          new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb")
+              .toSql(cqlQuery == null ? "cql.allRecords=1" : cqlQuery);
+      String column = format == Format.NDJSON ? "jsonb::text" : "jsonb";
+      sql =
+          "SELECT "
+              + column
+              + " FROM "
+              + table
+              + " "
+              + TABLE_NAME_CONTRACTS
+              + " WHERE "
+              + select.getWhere()
+              + (select.getOrderBy().isEmpty() ? "" : " ORDER BY " + select.getOrderBy());
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+
+    return pgClient
+        .withTrans(
+            conn ->
+                conn.getPgConnection()
+                    .query(
+                        "SET LOCAL idle_in_transaction_session_timeout = "
+                            + IDLE_IN_TRANSACTION_TIMEOUT)
+                    .execute()
+                    .compose(x -> conn.getPgConnection().prepare(sql))
+                    .compose(
+                        statement -> {
+                          startResponse(format, response);
+                          return pipe(statement.createStream(config.chunkSize()), format, response);
+                        }))
+        .onFailure(
+            t -> {
+              LOG.error("Export of contracts failed", t);
+              if (response.headWritten()) {
+                // the status has been sent already, abort so that the client sees a broken download
+                response.reset();
+              } else {
+                // leave the response to the caller, which sends an error instead
+                response.setChunked(false).headers().remove(HttpHeaders.CONTENT_DISPOSITION);
+              }
+            });
+  }
+
+  private static void startResponse(Format format, HttpServerResponse response) {
+    response
+        .setChunked(true)
+        .putHeader(HttpHeaders.CONTENT_TYPE, format.contentType)
+        .putHeader(
+            HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"contracts." + format.extension + "\"");
+    if (format == Format.CSV) {
+      response.write(csvHeader());
+    }
+  }
+
+  private static Future<Void> pipe(
+      RowStream<Row> stream, Format format, HttpServerResponse response) {
+    Promise<Void> promise = Promise.promise();
+    response.closeHandler(
+        v -> {
+          stream.close();
+          promise.tryFail("Connection closed by client");
+        });
+    stream.exceptionHandler(promise::tryFail);
+    stream.endHandler(v -> response.end().onComplete(promise));
+    stream.handler(
+        row -> {
+          response.write(format == Format.NDJSON ? ndjsonLine(row) : csvLine(row));
+          if (response.writeQueueFull()) {
+            stream.pause();
+            response.drainHandler(d -> stream.resume());
+          }
+        });
+    return promise.future();
+  }
+
+  private static Buffer ndjsonLine(Row row) {
+    return Buffer.buffer(row.getString(0)).appendByte((byte) '\n');
+  }
+
+  private static Buffer csvLine(Row row) {
+    JsonObject contract = row.getJsonObject(0);
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      line.append(csvValue(valueAt(contract, CSV_COLUMNS.get(i))));
+    }
+    return Buffer.buffer(line.append("\r\n").toString());
+  }
+
+  private static Buffer csvHeader() {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      String[] path = CSV_COLUMNS.get(i);
+      line.append(path[path.length - 1]);
+    }
+    return Buffer.buffer(line.append("\r\n").toString());
+  }
+
+  private static Object valueAt(JsonObject json, String[] path) {
+    JsonObject object = json;
+    for (int i = 0; i < path.length - 1; i++) {
+      object = object.getJsonObject(path[i]);
+      if (object == null) {
+        return null;
+      }
+    }
+    return object.getValue(path[path.length - 1]);
+  }
+
+  /** Formats a value as a CSV field according to RFC 4180. */
+  static String csvValue(Object value) {
+    if (value == null) {
+      return "";
+    }
+    String s = value.toString();
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+      return s;
+    }
+    return '"' + s.replace("\"", "\"\"") + '"';
+  }
+}
@@ -0,0 +1,218 @@
+package org.folio.idmconnect;
+
+import static io.vertx.core.Future.succeededFuture;
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.folio.dbschema.ObjectMapperTool;
+import org.folio.rest.jaxrs.model.BulkImportResponse;
+import org.folio.rest.jaxrs.model.Contract;
+import org.folio.rest.jaxrs.model.Contract.Status;
+import org.folio.rest.jaxrs.model.ImportFailure;
+import org.folio.rest.persist.PostgresClient;
+import org.folio.rest.tools.utils.MetadataUtil;
+
+/**
+ * Imports walk-in contracts from newline delimited JSON that arrives in chunks.
+ *
+ * <p>{@link #write(Buffer)} parses and validates the complete lines of a chunk, and every batch of
+ * {@link BulkConfig#chunkSize()} lines is written with a single {@code saveBatch}, so only one
+ * batch of contracts and one line are held in memory. If a batch cannot be written, its contracts
+ * are saved one by one to find the failing lines. Like {@code POST /idm-connect/contract}, every
+ * contract is created with status {@code draft}.
+ *
+ * <p>An instance imports one request body; {@link #write(Buffer)} must not be called again before
+ * the future of the previous call has completed.
+ */
+public class ContractImporter {
+
+  /** Maximum length of a line in bytes, longer lines are skipped and reported as failed. */
+  static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+  private static final Validator VALIDATOR =
+      Validation.buildDefaultValidatorFactory().getValidator();
+
+  private final PostgresClient pgClient;
+  private final Map<String, String> okapiHeaders;
+  private final BulkConfig config;
+  private final BulkImportResponse response =
+      new BulkImportResponse()
+          .withRequested(0)
+          .withImported(0)
+          .withFailed(0)
+          .withFailedItems(new ArrayList<>());
+  private final List<Line> batch = new ArrayList<>();
+  private Buffer partialLine = Buffer.buffer();
+  private boolean lineTooLong;
+  private int lineNumber;
+
+  public ContractImporter(
+      PostgresClient pgClient, Map<String, String> okapiHeaders, BulkConfig config) {
+    this.pgClient = pgClient;
+    this.okapiHeaders = okapiHeaders;
+    this.config = config;
+  }
+
+  /**
+   * Imports the complete lines of the chunk; the rest is kept until the next chunk.
+   *
+   * @return a future that completes when all full batches have been written
+   */
+  public Future<Void> write(Buffer chunk) {
+    Future<Void> saved = succeededFuture();
+    int start = 0;
+    for (int i = 0; i < chunk.length(); i++) {
+      if (chunk.getByte(i) == '\n') {
+        appendToLine(chunk, start, i);
+        endLine();
+        start = i + 1;
+        if (batch.size() >= config.chunkSize()) {
+          List<Line> full = List.copyOf(batch);
+          batch.clear();
+          saved = saved.compose(v -> save(full));
+        }
+      }
+    }
+    appendToLine(chunk, start, chunk.length());
+    return saved;
+  }
+
+  /** Imports the last line and the remaining batch and returns the result of the import. */
+  public Future<BulkImportResponse> end() {
+    if (partialLine.length() > 0 || lineTooLong) {
+      endLine();
+    }
+    List<Line> rest = List.copyOf(batch);
+    batch.clear();
+    return save(rest)
+        .map(
+            v -> {
+              // lines failing to save are reported after lines of later batches failing to parse
+              response.getFailedItems().sort(Comparator.comparing(ImportFailure::getLine));
+              return response.withFailed(response.getFailedItems().size());
+            });
+  }
+
+  private void appendToLine(Buffer chunk, int start, int end) {
+    if (lineTooLong) {
+      return;
+    }
+    if (partialLine.length() + end - start > MAX_LINE_LENGTH) {
+      lineTooLong = true;
+      partialLine = Buffer.buffer();
+      return;
+    }
+    partialLine.appendBuffer(chunk, start, end - start);
+  }
+
+  private void endLine() {
+    int number = ++lineNumber;
+    if (lineTooLong) {
+      lineTooLong = false;
+      response.setRequested(response.getRequested() + 1);
+      fail(number, "Line exceeds " + MAX_LINE_LENGTH + " bytes");
+      return;
+    }
+    String json = partialLine.toString(StandardCharsets.UTF_8);
+    partialLine = Buffer.buffer();
+    if (json.isBlank()) {
+      return;
+    }
+    response.setRequested(response.getRequested() + 1);
+    Line line = parse(number, json);
+    if (line != null) {
+      batch.add(line);
+    }
+  }
+
+  private Line parse(int lineNumber, String json) {
+    Contract contract;
+    try {
+      contract = ObjectMapperTool.readValue(json, Contract.class);
+    } catch (Exception e) {
+      return fail(lineNumber, "Invalid JSON: " + e.getMessage());
+    }
+    if (contract == null) {
+      return fail(lineNumber, "Invalid JSON: not a contract");
+    }
+    if (contract.getId() == null) {
+      contract.setId(UUID.randomUUID().toString());
+    } else if (ContractTransmitter.toUuid(contract.getId()) == null) {
+      return fail(lineNumber, "id: invalid UUID " + contract.getId());
+    }
+    contract.setStatus(Status.DRAFT);
+    String violations =
+        VALIDATOR.validate(contract).stream()
+            .map(ContractImporter::format)
+            .sorted()
+            .collect(Collectors.joining(", "));
+    if (!violations.isEmpty()) {
+      return fail(lineNumber, violations);
+    }
+    try {
+      MetadataUtil.populateMetadata(contract, okapiHeaders);
+    } catch (ReflectiveOperationException e) {
+      return fail(lineNumber, e.getMessage());
+    }
+    return new Line(lineNumber, contract);
+  }
+
+  private Future<Void> save(List<Line> batch) {
+    if (batch.isEmpty()) {
+      return succeededFuture();
+    }
+    List<Contract> contracts = batch.stream().map(Line::contract).toList();
+    return pgClient
+        .saveBatch(TABLE_NAME_CONTRACTS, contracts)
+        .<Void>map(
+            rows -> {
+              response.setImported(response.getImported() + batch.size());
+              return null;
+            })
+        .recover(t -> saveOneByOne(batch));
+  }
+
+  private Future<Void> saveOneByOne(List<Line> batch) {
+    Future<Void> future = succeededFuture();
+    for (Line line : batch) {
+      future =
+          future.compose(
+              v ->
+                  pgClient
+                      .save(TABLE_NAME_CONTRACTS, line.contract().getId(), line.contract())
+                      .<Void>map(
+                          id -> {
+                            response.setImported(response.getImported() + 1);
+                            return null;
+                          })
+                      .otherwise(
+                          t -> {
+                            fail(line.number(), t.getMessage());
+                            return null;
+                          }));
+    }
+    return future;
+  }
+
+  private Line fail(int lineNumber, String message) {
+    response.getFailedItems().add(new ImportFailure().withLine(lineNumber).withMessage(message));
+    return null;
+  }
+
+  private static String format(ConstraintViolation<Contract> violation) {
+    return violation.getPropertyPath() + " " + violation.getMessage();
+  }
+
+  private record Line(int number, Contract contract) {}
+}
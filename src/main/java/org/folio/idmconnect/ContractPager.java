@@ -0,0 +1,244 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.folio.cql2pgjson.CQL2PgJSON;
+import org.folio.dbschema.ObjectMapperTool;
+import org.folio.rest.jaxrs.model.Contract;
+import org.folio.rest.jaxrs.model.Contracts;
+import org.folio.rest.persist.PostgresClient;
+import org.z3950.zing.cql.CQLNode;
+import org.z3950.zing.cql.CQLParser;
+import org.z3950.zing.cql.CQLSortNode;
+import org.z3950.zing.cql.Modifier;
+import org.z3950.zing.cql.ModifierSet;
+
+/**
+ * Pages through the contracts matching a CQL query with keyset pagination.
+ *
+ * <p>The opaque cursor encodes the sort field and direction, and the sort key and id of the last
+ * contract of the previous page. The next page continues with a {@code WHERE (key, id) > (...)}
+ * condition instead of an {@code OFFSET}, so fetching a page does not get slower the further the
+ * client pages. Contracts are sorted by id unless the query has a {@code sortBy} with a single
+ * field; ties are broken by id.
+ *
+ * <p>Only fields with a btree index in {@code schema.json} can be sorted by. Their sort key is the
+ * expression of that index, so the order is the one of the index, and {@code
+ * contract_cursor_indexes.sql} adds the matching {@code (key IS NULL, key, id)} indexes that serve
+ * both the condition and the order. Contracts without the field come last, or first if sorted
+ * descending.
+ */
+public class ContractPager {
+
+  /** Value of the cursor parameter that requests the first page. */
+  public static final String FIRST_PAGE = "*";
+
+  private static final String ID = "id";
+
+  /** Expressions of the btree indexes of schema.json by field; keep in sync with both files. */
+  static final Map<String, String> SORT_KEYS =
+      Map.of(
+          "uniLogin", "left(jsonb->>'uniLogin',600)",
+          "beginDate", "normalize_iso_date(jsonb->>'beginDate')",
+          "endDate", "normalize_iso_date(jsonb->>'endDate')");
+
+  private final PostgresClient pgClient;
+  private final String schema;
+  private final String table;
+
+  public ContractPager(PostgresClient pgClient, String tenantId) {
+    this.pgClient = pgClient;
+    this.schema = PostgresClient.convertToPsqlStandard(tenantId);
+    this.table = schema + "." + TABLE_NAME_CONTRACTS;
+  }
+
+  /**
+   * Returns the page following the cursor. {@link Contracts#getNextCursor()} is null on the last
+   * page.
+   *
+   * @param cursor the cursor of the previous page or {@link #FIRST_PAGE}
+   * @param totalRecords {@code none} to omit {@link Contracts#getTotalRecords()}, {@code exact} to
+   *     count, anything else to estimate it
+   * @return a failed future with an {@link IllegalArgumentException} if the cursor is invalid, does
+   *     not match the sort order of the query or the limit is 0, or with a {@code
+   *     CQL2PgJSONException} if the query is invalid
+   */
+  public Future<Contracts> getPage(String cqlQuery, String cursor, int limit, String totalRecords) {
+    String query = cqlQuery == null ? "cql.allRecords=1" : cqlQuery;
+    String where;
+    Sort sort;
+    Cursor after;
+    try {
+      if (limit < 1) {
+        throw new IllegalArgumentException("cursor requires a limit of at least 1");
+      }
+      where = new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb").toSql(query).getWhere();
+      sort = Sort.of(query);
+      after = FIRST_PAGE.equals(cursor) ? null : Cursor.decode(cursor, sort);
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+
+    String from = " FROM " + table + " " + TABLE_NAME_CONTRACTS + " WHERE (" + where + ")";
+    String order = sort.descending() ? " DESC" : "";
+    String comparison = sort.descending() ? " < " : " > ";
+    StringBuilder sql = new StringBuilder("SELECT jsonb, ");
+    Tuple tuple = Tuple.tuple();
+    if (sort.byId()) {
+      // the primary key index serves both the condition and the order
+      sql.append("id::text, id").append(from);
+      if (after != null) {
+        sql.append(" AND id").append(comparison).append("$1::uuid");
+        tuple.addUUID(after.id());
+      }
+      sql.append(" ORDER BY id").append(order);
+    } else {
+      String key = sort.keyExpression();
+      // the key is compared as (key IS NULL, coalesce(key, ''), id), so that contracts without
+      // the field sort like NULLs do and the row comparison never meets a NULL
+      String nulls = "(" + key + ") IS NULL";
+      String nonNullKey = "coalesce(" + key + ", '')";
+      sql.append(key).append(", id").append(from);
+      if (after != null) {
+        sql.append(" AND (").append(nulls).append(", ").append(nonNullKey).append(", id)");
+        sql.append(comparison).append("($1::boolean, $2::text, $3::uuid)");
+        tuple
+            .addBoolean(after.key() == null)
+            .addString(after.key() == null ? "" : after.key())
+            .addUUID(after.id());
+      }
+      sql.append(" ORDER BY ").append(nulls).append(order);
+      sql.append(", ").append(nonNullKey).append(order).append(", id").append(order);
+    }
+    // one more row tells whether there is a next page, added as a long so that it cannot overflow
+    sql.append(" LIMIT ").append(limit + 1L);
+
+    return count(from, totalRecords)
+        .compose(
+            total ->
+                pgClient
+                    .execute(sql.toString(), tuple)
+                    .map(
+                        rows ->
+                            toContracts(rows, limit, sort)
+                                .withTotalRecords(
+                                    total == null
+                                        ? null
+                                        : (int) Math.min(total, Integer.MAX_VALUE))));
+  }
+
+  private Future<Long> count(String from, String totalRecords) {
+    if ("none".equals(totalRecords)) {
+      return Future.succeededFuture();
+    }
+    if ("exact".equals(totalRecords)) {
+      return pgClient
+          .execute("SELECT count(*)" + from)
+          .map(rows -> rows.iterator().next().getLong(0));
+    }
+    // RMB's estimate, which counts exactly if the estimate is small
+    return pgClient
+        .execute("SELECT " + schema + ".count_estimate($1)", Tuple.of("SELECT id" + from))
+        .map(rows -> rows.iterator().next().getLong(0));
+  }
+
+  private static Contracts toContracts(RowSet<Row> rows, int limit, Sort sort) {
+    List<Contract> contracts = new ArrayList<>(Math.min(limit, rows.size()));
+    Row last = null;
+    for (Row row : rows) {
+      if (contracts.size() == limit) {
+        String nextCursor = new Cursor(sort, last.getString(1), last.getUUID(2)).encode();
+        return new Contracts().withContracts(contracts).withNextCursor(nextCursor);
+      }
+      contracts.add(ObjectMapperTool.readValue(row.getJsonObject(0).encode(), Contract.class));
+      last = row;
+    }
+    return new Contracts().withContracts(contracts);
+  }
+
+  /** The field contracts are sorted by and the direction. */
+  record Sort(String field, boolean descending) {
+
+    static Sort of(String cqlQuery) throws Exception {
+      CQLNode node = new CQLParser().parse(cqlQuery);
+      if (!(node instanceof CQLSortNode sortNode)) {
+        return new Sort(ID, false);
+      }
+      List<ModifierSet> indexes = sortNode.getSortIndexes();
+      if (indexes.size() > 1) {
+        throw new IllegalArgumentException("cursor requires sortBy with a single field");
+      }
+      ModifierSet index = indexes.get(0);
+      if (!ID.equals(index.getBase()) && !SORT_KEYS.containsKey(index.getBase())) {
+        throw new IllegalArgumentException("cursor does not support sorting by " + index.getBase());
+      }
+      boolean descending = false;
+      for (Modifier modifier : index.getModifiers()) {
+        descending |= modifier.getType().toLowerCase().endsWith("descending");
+      }
+      return new Sort(index.getBase(), descending);
+    }
+
+    boolean byId() {
+      return ID.equals(field);
+    }
+
+    /** SQL expression of the sort key, the expression of the btree index of the field. */
+    String keyExpression() {
+      return SORT_KEYS.get(field);
+    }
+  }
+
+  /** Position after the last contract of a page. */
+  record Cursor(Sort sort, String key, UUID id) {
+
+    String encode() {
+      JsonObject json =
+          new JsonObject()
+              .put("sort", sort.field())
+              .put("desc", sort.descending())
+              .put("key", key)
+              .put(ID, id.toString());
+      return Base64.getUrlEncoder()
+          .withoutPadding()
+          .encodeToString(json.encode().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decode(String cursor, Sort sort) {
+      JsonObject json;
+      UUID id;
+      boolean matches;
+      try {
+        json =
+            new JsonObject(
+                new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        id = UUID.fromString(json.getString(ID));
+        matches =
+            sort.field().equals(json.getString("sort"))
+                && sort.descending() == json.getBoolean("desc", false)
+                && (sort.byId() || json.containsKey("key"));
+      } catch (IllegalArgumentException
+          | ClassCastException
+          | DecodeException
+          | NullPointerException e) {
+        throw new IllegalArgumentException("Invalid cursor", e);
+      }
+      if (!matches) {
+        throw new IllegalArgumentException("Cursor does not match the sort order of the query");
+      }
+      return new Cursor(sort, json.getString("key"), id);
+    }
+  }
+}
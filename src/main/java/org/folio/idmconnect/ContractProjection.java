@@ -0,0 +1,164 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.folio.cql2pgjson.CQL2PgJSON;
+import org.folio.cql2pgjson.model.SqlSelect;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Lists contracts with only some of their fields.
+ *
+ * <p>The requested jsonb paths are selected in SQL with {@code jsonb_build_object} and the rows are
+ * copied to the response as text, so the contracts are neither mapped to POJOs nor serialized
+ * again. The id is always included.
+ */
+public class ContractProjection {
+
+  private static final Pattern FIELD = Pattern.compile("\\w+(\\.\\w+)*");
+
+  private final PostgresClient pgClient;
+  private final String schema;
+  private final String table;
+  private final String select;
+
+  /**
+   * @param fields comma separated field paths, e.g. {@code personal.lastName,uniLogin}
+   * @throws IllegalArgumentException if a field is not a path of field names
+   */
+  public ContractProjection(PostgresClient pgClient, String tenantId, String fields) {
+    this.pgClient = pgClient;
+    this.schema = PostgresClient.convertToPsqlStandard(tenantId);
+    this.table = schema + "." + TABLE_NAME_CONTRACTS;
+    this.select = selectExpression(fields);
+  }
+
+  /**
+   * Returns the page as the JSON text of a {@code Contracts} object.
+   *
+   * @param totalRecords {@code none} to omit the total, {@code exact} to count, anything else to
+   *     estimate it
+   * @return a failed future with a {@code CQL2PgJSONException} if the query is invalid
+   */
+  public Future<String> getPage(String cqlQuery, String totalRecords, int offset, int limit) {
+    SqlSelect sqlSelect;
+    try {
+      sqlSelect =
+          new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb")
+              .toSql(cqlQuery == null ? "cql.allRecords=1" : cqlQuery);
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+    String from = " FROM " + table + " " + TABLE_NAME_CONTRACTS + " WHERE " + sqlSelect.getWhere();
+    String sql =
+        "SELECT "
+            + select
+            + "::text"
+            + from
+            + (sqlSelect.getOrderBy().isEmpty() ? "" : " ORDER BY " + sqlSelect.getOrderBy())
+            + " OFFSET "
+            + offset
+            + " LIMIT "
+            + limit;
+
+    return count(from, totalRecords)
+        .compose(
+            total ->
+                pgClient
+                    .execute(sql)
+                    .map(
+                        rows -> {
+                          StringBuilder json = new StringBuilder("{\"contracts\":[");
+                          boolean first = true;
+                          for (Row row : rows) {
+                            if (!first) {
+                              json.append(',');
+                            }
+                            json.append(row.getString(0));
+                            first = false;
+                          }
+                          json.append(']');
+                          if (total != null) {
+                            json.append(",\"totalRecords\":").append(total);
+                          }
+                          return json.append('}').toString();
+                        }));
+  }
+
+  private Future<Long> count(String from, String totalRecords) {
+    if ("none".equals(totalRecords)) {
+      return Future.succeededFuture();
+    }
+    if ("exact".equals(totalRecords)) {
+      return pgClient
+          .execute("SELECT count(*)" + from)
+          .map(rows -> rows.iterator().next().getLong(0));
+    }
+    // RMB's estimate, which counts exactly if the estimate is small
+    return pgClient
+        .execute("SELECT " + schema + ".count_estimate($1)", Tuple.of("SELECT id" + from))
+        .map(rows -> rows.iterator().next().getLong(0));
+  }
+
+  /**
+   * Builds a {@code jsonb_build_object} expression with the fields nested like in a contract. A
+   * nested object is only built if the contract has its parent field.
+   */
+  static String selectExpression(String fields) {
+    Map<String, Object> tree = new LinkedHashMap<>();
+    tree.put("id", null);
+    for (String field : fields.split(",", -1)) {
+      String path = field.trim();
+      if (!FIELD.matcher(path).matches()) {
+        throw new IllegalArgumentException("Invalid field: " + field);
+      }
+      add(tree, path.split("\\."), 0);
+    }
+    return "jsonb_strip_nulls(" + buildObject(tree, "jsonb") + ")";
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void add(Map<String, Object> tree, String[] path, int index) {
+    String name = path[index];
+    if (index == path.length - 1) {
+      // the whole value, replacing any subfields requested before
+      tree.put(name, null);
+      return;
+    }
+    if (tree.containsKey(name) && tree.get(name) == null) {
+      return;
+    }
+    Map<String, Object> subtree =
+        (Map<String, Object>) tree.computeIfAbsent(name, k -> new LinkedHashMap<>());
+    add(subtree, path, index + 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String buildObject(Map<String, Object> tree, String parent) {
+    StringBuilder sql = new StringBuilder("jsonb_build_object(");
+    boolean first = true;
+    for (Map.Entry<String, Object> entry : tree.entrySet()) {
+      if (!first) {
+        sql.append(", ");
+      }
+      first = false;
+      String value = parent + "->'" + entry.getKey() + "'";
+      sql.append('\'').append(entry.getKey()).append("', ");
+      if (entry.getValue() == null) {
+        sql.append(value);
+      } else {
+        // NULL instead of an empty object if the contract does not have the parent
+        sql.append("CASE WHEN ").append(parent).append(" ? '").append(entry.getKey());
+        sql.append("' THEN ").append(buildObject((Map<String, Object>) entry.getValue(), value));
+        sql.append(" END");
+      }
+    }
+    return sql.append(')').toString();
+  }
+}
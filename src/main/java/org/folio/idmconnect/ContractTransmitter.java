@@ -0,0 +1,339 @@
+package org.folio.idmconnect;
+
+import static io.vertx.core.Future.succeededFuture;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+import static org.folio.idmconnect.Constants.JSONB_FIELD_STATUS;
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+import static org.folio.idmconnect.Constants.TABLE_NAME_OUTBOX;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import javax.ws.rs.core.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.cql2pgjson.CQL2PgJSON;
+import org.folio.dbschema.ObjectMapperTool;
+import org.folio.rest.jaxrs.model.Contract;
+import org.folio.rest.jaxrs.model.Contract.Status;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Transmits walk-in contracts to the IDM without holding a database connection or row lock while
+ * waiting for the IDM.
+ *
+ * <p>A transmission runs in three steps:
+ *
+ * <ol>
+ *   <li>claim: a single statement sets the status to {@code transmission_in_progress}, records the
+ *       previous status and a lease in the outbox table and returns the contracts, skipping those
+ *       already in transmission
+ *   <li>send the contracts to the IDM
+ *   <li>finalize: a single statement removes the outbox entries and writes the resulting statuses,
+ *       but only of contracts that are still claimed by this transmission
+ * </ol>
+ *
+ * <p>If the module instance dies or the finalize fails, the claim expires with its lease: the
+ * {@link TransmissionOutbox} worker then completes the transmission, and a new transmit may claim
+ * the contract again. Every claim records a new lease id in the outbox entry, and only the holder
+ * of the lease id can finalize it, so that a transmission whose claim has been taken over cannot
+ * overwrite the result of the newer one. Contracts in transmission cannot be changed by {@code
+ * PUT}, so that the result of the IDM is never lost.
+ */
+public class ContractTransmitter {
+
+  public static final String MSG_NOT_FOUND = "Not found";
+  public static final String MSG_IN_PROGRESS = "Transmission of contract already in progress";
+  public static final int BATCH_SIZE = 100;
+
+  private static final Logger LOG = LogManager.getLogger(ContractTransmitter.class);
+
+  private final PostgresClient pgClient;
+  private final IdmClient idmClient;
+  private final String table;
+  private final int lease;
+  private final String claimSql;
+  private final String finalizeSql;
+
+  /**
+   * @param lease seconds after which an unfinished synchronous transmission may be claimed again
+   */
+  public ContractTransmitter(
+      PostgresClient pgClient, String tenantId, IdmClient idmClient, int lease) {
+    this.pgClient = pgClient;
+    this.idmClient = idmClient;
+    this.lease = lease;
+    String schema = PostgresClient.convertToPsqlStandard(tenantId);
+    this.table = schema + "." + TABLE_NAME_CONTRACTS;
+    String outbox = schema + "." + TABLE_NAME_OUTBOX;
+    String status = "jsonb->>'" + JSONB_FIELD_STATUS + "'";
+    // the row locks of the first CTE make a concurrent claim wait and then see the claimed status;
+    // they are taken in id order to avoid deadlocks between overlapping batches. A contract in
+    // transmission is claimable if its outbox entry is missing or its lease has expired, then the
+    // previous status is taken from the entry.
+    this.claimSql =
+        "WITH old AS (SELECT c.id, c.jsonb, o.contract_id IS NOT NULL AS queued, o.previous_status,"
+            + " o.locked_until FROM "
+            + table
+            + " c LEFT JOIN "
+            + outbox
+            + " o ON o.contract_id = c.id WHERE c.id = ANY($1) ORDER BY c.id FOR UPDATE OF c),"
+            + " queued AS (INSERT INTO "
+            + outbox
+            + " AS o (contract_id, previous_status, locked_until, lease_id) SELECT id, CASE WHEN "
+            + status
+            + " = $2 THEN coalesce(previous_status, $4) ELSE coalesce("
+            + status
+            + ", $4) END, now() + make_interval(secs => $3::int), $5::uuid FROM old WHERE "
+            + status
+            + " IS DISTINCT FROM $2 OR NOT queued OR locked_until < now()"
+            + " ON CONFLICT (contract_id) DO UPDATE SET previous_status = EXCLUDED.previous_status,"
+            + " attempts = 0, next_attempt_at = now(), locked_until = EXCLUDED.locked_until,"
+            + " lease_id = EXCLUDED.lease_id, last_error = NULL"
+            + " WHERE o.locked_until IS NULL OR o.locked_until < now()"
+            + " RETURNING contract_id, previous_status), claimed AS (UPDATE "
+            + table
+            + " t SET jsonb = jsonb_set(t.jsonb, '{"
+            + JSONB_FIELD_STATUS
+            + "}', to_jsonb($2::text)) FROM queued WHERE t.id = queued.contract_id)"
+            + " SELECT old.jsonb, queued.previous_status FROM old"
+            + " JOIN queued ON queued.contract_id = old.id ORDER BY old.id";
+    this.finalizeSql =
+        "WITH done AS (DELETE FROM "
+            + outbox
+            + " WHERE contract_id = ANY($1) AND lease_id = $4 RETURNING contract_id) UPDATE "
+            + table
+            + " t SET jsonb = jsonb_set(t.jsonb, '{"
+            + JSONB_FIELD_STATUS
+            + "}', to_jsonb(u.status)) FROM unnest($1::uuid[], $2::text[]) AS u(id, status)"
+            + " JOIN done ON done.contract_id = u.id WHERE t.id = u.id AND t."
+            + status
+            + " = $3";
+  }
+
+  /**
+   * Transmits the contract with the given id and updates its status.
+   *
+   * @return the response of the IDM, a 404 response if the contract does not exist or a 409
+   *     response if a transmission of the contract is already in progress
+   */
+  public Future<Response> transmit(String id) {
+    UUID uuid = toUuid(id);
+    if (uuid == null) {
+      return succeededFuture(createResponse(404, MSG_NOT_FOUND));
+    }
+    UUID leaseId = UUID.randomUUID();
+    return claim(List.of(uuid), lease, leaseId)
+        .compose(
+            contracts ->
+                contracts.isEmpty() ? rejectClaim(id) : sendAndFinalize(contracts.get(0), leaseId));
+  }
+
+  /**
+   * Transmits the contracts with the given ids in batches of {@link #BATCH_SIZE} and updates their
+   * statuses. At most {@code concurrency} requests are sent to the IDM at the same time.
+   *
+   * @return the ids that could not be transmitted: invalid or unknown ids, contracts already in
+   *     transmission and contracts the IDM did not accept
+   */
+  public Future<List<String>> transmitAll(List<String> ids, int concurrency) {
+    List<String> failedIds = new ArrayList<>();
+    List<UUID> uuids = new ArrayList<>();
+    for (String id : new LinkedHashSet<>(ids)) {
+      UUID uuid = toUuid(id);
+      if (uuid == null) {
+        failedIds.add(id);
+      } else {
+        uuids.add(uuid);
+      }
+    }
+    Future<Void> future = succeededFuture();
+    for (int i = 0; i < uuids.size(); i += BATCH_SIZE) {
+      List<UUID> batch = uuids.subList(i, Math.min(i + BATCH_SIZE, uuids.size()));
+      future =
+          future.compose(v -> transmitBatch(batch, concurrency).map(failedIds::addAll)).mapEmpty();
+    }
+    return future.map(v -> failedIds);
+  }
+
+  /**
+   * Returns the ids of all contracts matching the CQL query.
+   *
+   * @return a failed future with a {@code QueryValidationException} or {@code FieldException} if
+   *     the query is invalid
+   */
+  public Future<List<String>> findIds(String cqlQuery) {
+    String where;
+    try {
+      where = new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb").toSql(cqlQuery).getWhere();
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+    return pgClient
+        .execute("SELECT id FROM " + table + " " + TABLE_NAME_CONTRACTS + " WHERE " + where)
+        .map(
+            rows -> {
+              List<String> ids = new ArrayList<>(rows.rowCount());
+              rows.forEach(row -> ids.add(row.getUUID(0).toString()));
+              return ids;
+            });
+  }
+
+  /**
+   * Returns the status of a contract after a transmission.
+   *
+   * @param status the status before the transmission, null is treated as {@code draft}
+   * @param succeeded whether the IDM accepted the contract
+   */
+  public static Status nextStatus(Status status, boolean succeeded) {
+    if (isInitialTransmission(status)) {
+      return succeeded ? Status.PENDING : Status.TRANSMISSION_ERROR;
+    } else {
+      return succeeded ? Status.PENDING_EDIT : Status.TRANSMISSION_ERROR_EDIT;
+    }
+  }
+
+  /** Whether a contract with this status has not been created in the IDM yet. */
+  public static boolean isInitialTransmission(Status status) {
+    return status == null || status == Status.DRAFT || status == Status.TRANSMISSION_ERROR;
+  }
+
+  private Future<List<String>> transmitBatch(List<UUID> batch, int concurrency) {
+    UUID leaseId = UUID.randomUUID();
+    return claim(batch, lease, leaseId)
+        .compose(
+            contracts ->
+                FutureUtils.mapWithConcurrency(
+                        contracts,
+                        concurrency,
+                        contract -> send(contract).map(ContractTransmitter::isSucceeded))
+                    .compose(
+                        succeeded -> {
+                          Set<String> failedIds = new LinkedHashSet<>();
+                          batch.forEach(uuid -> failedIds.add(uuid.toString()));
+                          List<Status> statuses = new ArrayList<>();
+                          for (int i = 0; i < contracts.size(); i++) {
+                            Contract contract = contracts.get(i);
+                            statuses.add(nextStatus(contract.getStatus(), succeeded.get(i)));
+                            if (Boolean.TRUE.equals(succeeded.get(i))) {
+                              failedIds.remove(contract.getId());
+                            }
+                          }
+                          return finalizeStatuses(contracts, statuses, leaseId)
+                              .map(v -> List.copyOf(failedIds));
+                        }));
+  }
+
+  /**
+   * Claims the contracts for a transmission.
+   *
+   * @param lease seconds the caller may work on the contracts before the outbox worker takes them
+   *     over, null to hand them to the worker right away
+   * @param leaseId id needed to finalize the claim, null if the claim is handed to the worker
+   * @return the claimed contracts with the status they had before the claim
+   */
+  Future<List<Contract>> claim(List<UUID> ids, Integer lease, UUID leaseId) {
+    return pgClient
+        .execute(
+            claimSql,
+            Tuple.of(
+                ids.toArray(UUID[]::new),
+                Status.TRANSMISSION_IN_PROGRESS.value(),
+                lease,
+                Status.DRAFT.value(),
+                leaseId))
+        .map(ContractTransmitter::toContracts);
+  }
+
+  Future<Response> rejectClaim(String id) {
+    return pgClient
+        .getById(TABLE_NAME_CONTRACTS, id, Contract.class)
+        .map(
+            contract ->
+                contract == null
+                    ? createResponse(404, MSG_NOT_FOUND)
+                    : createResponse(409, MSG_IN_PROGRESS));
+  }
+
+  private Future<Response> sendAndFinalize(Contract contract, UUID leaseId) {
+    return send(contract)
+        .compose(
+            response ->
+                finalizeStatuses(
+                        List.of(contract),
+                        List.of(nextStatus(contract.getStatus(), isSucceeded(response))),
+                        leaseId)
+                    .map(v -> response));
+  }
+
+  Future<Response> send(Contract contract) {
+    if (contract.getStatus() == null) {
+      contract.setStatus(Status.DRAFT);
+    }
+    Future<Response> sent =
+        isInitialTransmission(contract.getStatus())
+            ? idmClient.postContract(contract)
+            : idmClient.putContract(contract);
+    return sent.otherwise(t -> createResponse(500, t.getMessage()));
+  }
+
+  static boolean isSucceeded(Response response) {
+    return response.getStatus() == 200;
+  }
+
+  private Future<Void> finalizeStatuses(
+      List<Contract> contracts, List<Status> statuses, UUID leaseId) {
+    if (contracts.isEmpty()) {
+      return succeededFuture();
+    }
+    UUID[] ids = contracts.stream().map(c -> UUID.fromString(c.getId())).toArray(UUID[]::new);
+    String[] values = statuses.stream().map(Status::value).toArray(String[]::new);
+    return pgClient
+        .execute(
+            finalizeSql, Tuple.of(ids, values, Status.TRANSMISSION_IN_PROGRESS.value(), leaseId))
+        .map(
+            rs -> {
+              if (rs.rowCount() != ids.length) {
+                // contracts in transmission cannot be changed, so they have been deleted or taken
+                // over by the outbox worker after the lease expired
+                LOG.warn(
+                    "{} contract(s) deleted or taken over during transmission, not setting the"
+                        + " status",
+                    ids.length - rs.rowCount());
+              }
+              return null;
+            });
+  }
+
+  private static List<Contract> toContracts(RowSet<Row> rows) {
+    List<Contract> contracts = new ArrayList<>(rows.rowCount());
+    for (Row row : rows) {
+      Contract contract = ObjectMapperTool.readValue(row.getJsonObject(0).encode(), Contract.class);
+      contracts.add(contract.withStatus(Status.fromValue(row.getString(1))));
+    }
+    return contracts;
+  }
+
+  static UUID toUuid(String id) {
+    try {
+      return UUID.fromString(id);
+    } catch (IllegalArgumentException | NullPointerException e) {
+      return null;
+    }
+  }
+
+  static Response createResponse(int status, String message) {
+    return Response.status(status)
+        .header(CONTENT_TYPE, TEXT_PLAIN)
+        .entity(Objects.requireNonNullElse(message, ""))
+        .build();
+  }
+}
@@ -0,0 +1,37 @@
+package org.folio.idmconnect;
+
+/**
+ * Entity tags of contracts. The tag is the {@code _version} that optimistic locking increments on
+ * every update, so it changes whenever the contract changes.
+ */
+public class ETags {
+
+  /** Returns the entity tag of the version, {@code "0"} for a record without version. */
+  public static String of(Integer version) {
+    return "\"" + (version == null ? 0 : version) + "\"";
+  }
+
+  /**
+   * Returns whether the value of an {@code If-Match} or {@code If-None-Match} header matches the
+   * entity tag.
+   *
+   * @param weak whether weak tags ({@code W/"1"}) match, as for {@code If-None-Match}
+   */
+  public static boolean matches(String header, String etag, boolean weak) {
+    for (String value : header.split(",")) {
+      String tag = value.trim();
+      if (tag.equals("*")) {
+        return true;
+      }
+      if (weak && tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ETags() {}
+}
@@ -0,0 +1,50 @@
+package org.folio.idmconnect;
+
+import io.vertx.core.Future;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class FutureUtils {
+
+  private FutureUtils() {}
+
+  /**
+   * Applies the asynchronous function to all items, running at most {@code concurrency} of them at
+   * the same time.
+   *
+   * @return the results in the order of the items; fails with the first failure of the function
+   */
+  public static <T, R> Future<List<R>> mapWithConcurrency(
+      List<T> items, int concurrency, Function<T, Future<R>> function) {
+    Object[] results = new Object[items.size()];
+    AtomicInteger next = new AtomicInteger();
+    List<Future<Void>> workers = new ArrayList<>();
+    for (int i = 0; i < Math.min(Math.max(concurrency, 1), items.size()); i++) {
+      workers.add(runWorker(items, function, results, next));
+    }
+    return Future.all(workers).map(v -> toList(results));
+  }
+
+  private static <T, R> Future<Void> runWorker(
+      List<T> items, Function<T, Future<R>> function, Object[] results, AtomicInteger next) {
+    int index = next.getAndIncrement();
+    if (index >= items.size()) {
+      return Future.succeededFuture();
+    }
+    return function
+        .apply(items.get(index))
+        .compose(
+            result -> {
+              results[index] = result;
+              return runWorker(items, function, results, next);
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <R> List<R> toList(Object[] results) {
+    return (List<R>) Arrays.asList(results);
+  }
+}
@@ -1,8 +1,12 @@
 package org.folio.idmconnect;
 
-import static java.lang.Boolean.parseBoolean;
 import static java.lang.System.getenv;
 
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.PoolOptions;
+import java.util.EnumMap;
+import java.util.Map;
+
 public class IdmClientConfig {
 
   public static final String ENVVAR_IDM_TOKEN = "IDM_TOKEN";
@@ -10,12 +14,50 @@ public class IdmClientConfig {
   public static final String ENVVAR_IDM_CONTRACT_URL = "IDM_CONTRACT_URL";
   public static final String ENVVAR_IDM_READER_NUMBER_URL = "IDM_READER_NUMBER_URL";
   public static final String ENVVAR_IDM_TRUST_ALL = "IDM_TRUST_ALL";
+  public static final String ENVVAR_IDM_MAX_POOL_SIZE = "IDM_MAX_POOL_SIZE";
+  public static final String ENVVAR_IDM_MAX_WAIT_QUEUE_SIZE = "IDM_MAX_WAIT_QUEUE_SIZE";
+  public static final String ENVVAR_IDM_KEEP_ALIVE = "IDM_KEEP_ALIVE";
+  public static final String ENVVAR_IDM_KEEP_ALIVE_TIMEOUT = "IDM_KEEP_ALIVE_TIMEOUT";
+  public static final String ENVVAR_IDM_IDLE_TIMEOUT = "IDM_IDLE_TIMEOUT";
+  public static final String ENVVAR_IDM_PIPELINING = "IDM_PIPELINING";
+  public static final String ENVVAR_IDM_HTTP2 = "IDM_HTTP2";
+  public static final String ENVVAR_IDM_HTTP2_MULTIPLEXING_LIMIT = "IDM_HTTP2_MULTIPLEXING_LIMIT";
+  public static final String ENVVAR_IDM_PROXY_CACHE_TTL = "IDM_PROXY_CACHE_TTL";
+  public static final String ENVVAR_IDM_SEARCH_CACHE_SIZE = "IDM_SEARCH_CACHE_SIZE";
+  public static final String ENVVAR_IDM_SEARCH_CACHE_TTL = "IDM_SEARCH_CACHE_TTL";
+  public static final String ENVVAR_IDM_TRANSMIT_CONCURRENCY = "IDM_TRANSMIT_CONCURRENCY";
+  public static final String ENVVAR_IDM_SEARCH_HEDGING = "IDM_SEARCH_HEDGING";
+  public static final String ENVVAR_IDM_SEARCH_HEDGING_MIN_DELAY = "IDM_SEARCH_HEDGING_MIN_DELAY";
+  public static final String ENVVAR_IDM_RETRY_BUDGET = "IDM_RETRY_BUDGET";
+  public static final int DEFAULT_SEARCH_CACHE_SIZE = 1000;
+  public static final int DEFAULT_SEARCH_CACHE_TTL = 30;
+  public static final int DEFAULT_SEARCH_HEDGING_MIN_DELAY = 50;
+  public static final int DEFAULT_RETRY_BUDGET = 20;
 
   private final String idmToken;
   private final String idmUrl;
   private final String idmContractUrl;
   private final String idmReaderNumberUrl;
   private final boolean idmTrustAll;
+  private final int idmMaxPoolSize;
+  private final int idmMaxWaitQueueSize;
+  private final boolean idmKeepAlive;
+  private final int idmKeepAliveTimeout;
+  private final int idmIdleTimeout;
+  private final boolean idmPipelining;
+  private final boolean idmHttp2;
+  private final int idmHttp2MultiplexingLimit;
+  private final long idmProxyCacheTtl;
+  private final int idmSearchCacheSize;
+  private final long idmSearchCacheTtl;
+  private final int idmTransmitConcurrency;
+  private final Map<IdmOperation, CircuitBreakerConfig> idmCircuitBreakers;
+  private final Map<IdmOperation, TimeoutConfig> idmTimeouts;
+  private final boolean idmSearchHedging;
+  private final int idmSearchHedgingMinDelay;
+  private final Map<IdmOperation, RetryConfig> idmRetries;
+  private final int idmRetryBudget;
+  private final TenantLimitConfig idmTenantLimit;
 
   public static IdmClientConfig createFromEnvVars() {
     return new Builder()
@@ -23,16 +65,78 @@ public class IdmClientConfig {
         .idmToken(getenv(ENVVAR_IDM_TOKEN))
         .idmContractUrl(getenv(ENVVAR_IDM_CONTRACT_URL))
         .idmReaderNumberUrl(getenv(ENVVAR_IDM_READER_NUMBER_URL))
-        .idmTrustAll(parseBoolean(getenv(ENVVAR_IDM_TRUST_ALL)))
+        .idmTrustAll(getBooleanEnvVar(ENVVAR_IDM_TRUST_ALL, false))
+        .idmMaxPoolSize(getIntEnvVar(ENVVAR_IDM_MAX_POOL_SIZE, PoolOptions.DEFAULT_MAX_POOL_SIZE))
+        .idmMaxWaitQueueSize(
+            getIntEnvVar(ENVVAR_IDM_MAX_WAIT_QUEUE_SIZE, PoolOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE))
+        .idmKeepAlive(getBooleanEnvVar(ENVVAR_IDM_KEEP_ALIVE, HttpClientOptions.DEFAULT_KEEP_ALIVE))
+        .idmKeepAliveTimeout(
+            getIntEnvVar(
+                ENVVAR_IDM_KEEP_ALIVE_TIMEOUT, HttpClientOptions.DEFAULT_KEEP_ALIVE_TIMEOUT))
+        .idmIdleTimeout(
+            getIntEnvVar(ENVVAR_IDM_IDLE_TIMEOUT, HttpClientOptions.DEFAULT_IDLE_TIMEOUT))
+        .idmPipelining(
+            getBooleanEnvVar(ENVVAR_IDM_PIPELINING, HttpClientOptions.DEFAULT_PIPELINING))
+        .idmHttp2(getBooleanEnvVar(ENVVAR_IDM_HTTP2, false))
+        .idmHttp2MultiplexingLimit(
+            getIntEnvVar(
+                ENVVAR_IDM_HTTP2_MULTIPLEXING_LIMIT,
+                HttpClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT))
+        .idmProxyCacheTtl(getIntEnvVar(ENVVAR_IDM_PROXY_CACHE_TTL, 0))
+        .idmSearchCacheSize(getIntEnvVar(ENVVAR_IDM_SEARCH_CACHE_SIZE, DEFAULT_SEARCH_CACHE_SIZE))
+        .idmSearchCacheTtl(getIntEnvVar(ENVVAR_IDM_SEARCH_CACHE_TTL, DEFAULT_SEARCH_CACHE_TTL))
+        .idmTransmitConcurrency(
+            getIntEnvVar(ENVVAR_IDM_TRANSMIT_CONCURRENCY, PoolOptions.DEFAULT_MAX_POOL_SIZE))
+        .idmCircuitBreakers(CircuitBreakerConfig.createFromEnvVars())
+        .idmTimeouts(TimeoutConfig.createFromEnvVars())
+        .idmSearchHedging(getBooleanEnvVar(ENVVAR_IDM_SEARCH_HEDGING, false))
+        .idmSearchHedgingMinDelay(
+            getIntEnvVar(ENVVAR_IDM_SEARCH_HEDGING_MIN_DELAY, DEFAULT_SEARCH_HEDGING_MIN_DELAY))
+        .idmRetries(RetryConfig.createFromEnvVars())
+        .idmRetryBudget(getIntEnvVar(ENVVAR_IDM_RETRY_BUDGET, DEFAULT_RETRY_BUDGET))
+        .idmTenantLimit(TenantLimitConfig.createFromEnvVars())
         .build();
   }
 
+  static boolean getBooleanEnvVar(String name, boolean defaultValue) {
+    String value = getenv(name);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+
+  static int getIntEnvVar(String name, int defaultValue) {
+    String value = getenv(name);
+    try {
+      return value == null ? defaultValue : Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " environment variable is not an integer.", e);
+    }
+  }
+
   private IdmClientConfig(Builder builder) {
     this.idmUrl = builder.idmUrl;
     this.idmToken = builder.idmToken;
     this.idmContractUrl = builder.idmContractUrl;
     this.idmReaderNumberUrl = builder.idmReaderNumberUrl;
     this.idmTrustAll = builder.idmTrustAll;
+    this.idmMaxPoolSize = builder.idmMaxPoolSize;
+    this.idmMaxWaitQueueSize = builder.idmMaxWaitQueueSize;
+    this.idmKeepAlive = builder.idmKeepAlive;
+    this.idmKeepAliveTimeout = builder.idmKeepAliveTimeout;
+    this.idmIdleTimeout = builder.idmIdleTimeout;
+    this.idmPipelining = builder.idmPipelining;
+    this.idmHttp2 = builder.idmHttp2;
+    this.idmHttp2MultiplexingLimit = builder.idmHttp2MultiplexingLimit;
+    this.idmProxyCacheTtl = builder.idmProxyCacheTtl;
+    this.idmSearchCacheSize = builder.idmSearchCacheSize;
+    this.idmSearchCacheTtl = builder.idmSearchCacheTtl;
+    this.idmTransmitConcurrency = builder.idmTransmitConcurrency;
+    this.idmCircuitBreakers = new EnumMap<>(builder.idmCircuitBreakers);
+    this.idmTimeouts = new EnumMap<>(builder.idmTimeouts);
+    this.idmSearchHedging = builder.idmSearchHedging;
+    this.idmSearchHedgingMinDelay = builder.idmSearchHedgingMinDelay;
+    this.idmRetries = new EnumMap<>(builder.idmRetries);
+    this.idmRetryBudget = builder.idmRetryBudget;
+    this.idmTenantLimit = builder.idmTenantLimit;
   }
 
   public String getIdmToken() {
@@ -55,6 +159,88 @@ public class IdmClientConfig {
     return idmTrustAll;
   }
 
+  public int getIdmMaxPoolSize() {
+    return idmMaxPoolSize;
+  }
+
+  public int getIdmMaxWaitQueueSize() {
+    return idmMaxWaitQueueSize;
+  }
+
+  public boolean isIdmKeepAlive() {
+    return idmKeepAlive;
+  }
+
+  public int getIdmKeepAliveTimeout() {
+    return idmKeepAliveTimeout;
+  }
+
+  public int getIdmIdleTimeout() {
+    return idmIdleTimeout;
+  }
+
+  public boolean isIdmPipelining() {
+    return idmPipelining;
+  }
+
+  public boolean isIdmHttp2() {
+    return idmHttp2;
+  }
+
+  public int getIdmHttp2MultiplexingLimit() {
+    return idmHttp2MultiplexingLimit;
+  }
+
+  public long getIdmProxyCacheTtl() {
+    return idmProxyCacheTtl;
+  }
+
+  public int getIdmSearchCacheSize() {
+    return idmSearchCacheSize;
+  }
+
+  public long getIdmSearchCacheTtl() {
+    return idmSearchCacheTtl;
+  }
+
+  /**
+   * Returns the number of contracts a tenant transmits at the same time, at most the maximum
+   * concurrent IDM calls of a tenant, so that its own transmissions are not rejected by its {@link
+   * TenantLimiter}.
+   */
+  public int getIdmTransmitConcurrency() {
+    int maxInFlight = idmTenantLimit.maxInFlight();
+    return maxInFlight > 0 ? Math.min(idmTransmitConcurrency, maxInFlight) : idmTransmitConcurrency;
+  }
+
+  public CircuitBreakerConfig getIdmCircuitBreakerConfig(IdmOperation operation) {
+    return idmCircuitBreakers.get(operation);
+  }
+
+  public TimeoutConfig getIdmTimeoutConfig(IdmOperation operation) {
+    return idmTimeouts.get(operation);
+  }
+
+  public boolean isIdmSearchHedging() {
+    return idmSearchHedging;
+  }
+
+  public int getIdmSearchHedgingMinDelay() {
+    return idmSearchHedgingMinDelay;
+  }
+
+  public RetryConfig getIdmRetryConfig(IdmOperation operation) {
+    return idmRetries.get(operation);
+  }
+
+  public int getIdmRetryBudget() {
+    return idmRetryBudget;
+  }
+
+  public TenantLimitConfig getIdmTenantLimitConfig() {
+    return idmTenantLimit;
+  }
+
   public static class Builder {
 
     private String idmToken;
@@ -62,6 +248,34 @@ public class IdmClientConfig {
     private String idmContractUrl;
     private String idmReaderNumberUrl;
     private boolean idmTrustAll = false;
+    private int idmMaxPoolSize = PoolOptions.DEFAULT_MAX_POOL_SIZE;
+    private int idmMaxWaitQueueSize = PoolOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE;
+    private boolean idmKeepAlive = HttpClientOptions.DEFAULT_KEEP_ALIVE;
+    private int idmKeepAliveTimeout = HttpClientOptions.DEFAULT_KEEP_ALIVE_TIMEOUT;
+    private int idmIdleTimeout = HttpClientOptions.DEFAULT_IDLE_TIMEOUT;
+    private boolean idmPipelining = HttpClientOptions.DEFAULT_PIPELINING;
+    private boolean idmHttp2 = false;
+    private int idmHttp2MultiplexingLimit = HttpClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT;
+    private long idmProxyCacheTtl = 0;
+    private int idmSearchCacheSize = DEFAULT_SEARCH_CACHE_SIZE;
+    private long idmSearchCacheTtl = DEFAULT_SEARCH_CACHE_TTL;
+    private int idmTransmitConcurrency = PoolOptions.DEFAULT_MAX_POOL_SIZE;
+    private final Map<IdmOperation, CircuitBreakerConfig> idmCircuitBreakers =
+        new EnumMap<>(IdmOperation.class);
+    private final Map<IdmOperation, TimeoutConfig> idmTimeouts = new EnumMap<>(IdmOperation.class);
+    private boolean idmSearchHedging = false;
+    private int idmSearchHedgingMinDelay = DEFAULT_SEARCH_HEDGING_MIN_DELAY;
+    private final Map<IdmOperation, RetryConfig> idmRetries = new EnumMap<>(IdmOperation.class);
+    private int idmRetryBudget = DEFAULT_RETRY_BUDGET;
+    private TenantLimitConfig idmTenantLimit = TenantLimitConfig.DEFAULT;
+
+    public Builder() {
+      for (IdmOperation operation : IdmOperation.values()) {
+        idmCircuitBreakers.put(operation, CircuitBreakerConfig.DEFAULT);
+        idmTimeouts.put(operation, TimeoutConfig.DEFAULT);
+        idmRetries.put(operation, RetryConfig.DEFAULT);
+      }
+    }
 
     public IdmClientConfig build() {
       return new IdmClientConfig(this);
@@ -91,5 +305,138 @@ public class IdmClientConfig {
       this.idmReaderNumberUrl = idmReaderNumberUrl;
       return this;
     }
+
+    /** Maximum number of pooled HTTP/1.x connections to the IDM. */
+    public Builder idmMaxPoolSize(int idmMaxPoolSize) {
+      this.idmMaxPoolSize = idmMaxPoolSize;
+      return this;
+    }
+
+    /** Maximum number of requests waiting for a pooled connection, -1 for unbounded. */
+    public Builder idmMaxWaitQueueSize(int idmMaxWaitQueueSize) {
+      this.idmMaxWaitQueueSize = idmMaxWaitQueueSize;
+      return this;
+    }
+
+    public Builder idmKeepAlive(boolean idmKeepAlive) {
+      this.idmKeepAlive = idmKeepAlive;
+      return this;
+    }
+
+    /** Seconds a kept-alive connection may stay unused before it is closed. */
+    public Builder idmKeepAliveTimeout(int idmKeepAliveTimeout) {
+      this.idmKeepAliveTimeout = idmKeepAliveTimeout;
+      return this;
+    }
+
+    /** Seconds without any data transfer after which a connection is closed, 0 to disable. */
+    public Builder idmIdleTimeout(int idmIdleTimeout) {
+      this.idmIdleTimeout = idmIdleTimeout;
+      return this;
+    }
+
+    public Builder idmPipelining(boolean idmPipelining) {
+      this.idmPipelining = idmPipelining;
+      return this;
+    }
+
+    /** Whether to negotiate HTTP/2 (ALPN for TLS, h2c upgrade for plain text). */
+    public Builder idmHttp2(boolean idmHttp2) {
+      this.idmHttp2 = idmHttp2;
+      return this;
+    }
+
+    /** Maximum concurrent streams per HTTP/2 connection, -1 to use the server's limit. */
+    public Builder idmHttp2MultiplexingLimit(int idmHttp2MultiplexingLimit) {
+      this.idmHttp2MultiplexingLimit = idmHttp2MultiplexingLimit;
+      return this;
+    }
+
+    /** Seconds after which a cached proxy is resolved again, 0 to resolve it only once. */
+    public Builder idmProxyCacheTtl(long idmProxyCacheTtl) {
+      this.idmProxyCacheTtl = idmProxyCacheTtl;
+      return this;
+    }
+
+    /** Maximum number of cached search results, 0 to disable the search cache. */
+    public Builder idmSearchCacheSize(int idmSearchCacheSize) {
+      this.idmSearchCacheSize = idmSearchCacheSize;
+      return this;
+    }
+
+    /** Seconds a search result is served from the cache. */
+    public Builder idmSearchCacheTtl(long idmSearchCacheTtl) {
+      this.idmSearchCacheTtl = idmSearchCacheTtl;
+      return this;
+    }
+
+    /** Maximum number of contracts sent to the IDM at the same time by a bulk transmit. */
+    public Builder idmTransmitConcurrency(int idmTransmitConcurrency) {
+      this.idmTransmitConcurrency = idmTransmitConcurrency;
+      return this;
+    }
+
+    /** Circuit breakers of the operations, {@link CircuitBreakerConfig#DEFAULT} by default. */
+    public Builder idmCircuitBreakers(Map<IdmOperation, CircuitBreakerConfig> configs) {
+      this.idmCircuitBreakers.putAll(configs);
+      return this;
+    }
+
+    /** Circuit breaker of the operation, {@link CircuitBreakerConfig#DEFAULT} by default. */
+    public Builder idmCircuitBreaker(IdmOperation operation, CircuitBreakerConfig config) {
+      this.idmCircuitBreakers.put(operation, config);
+      return this;
+    }
+
+    /** Timeouts of the operations, {@link TimeoutConfig#DEFAULT} by default. */
+    public Builder idmTimeouts(Map<IdmOperation, TimeoutConfig> configs) {
+      this.idmTimeouts.putAll(configs);
+      return this;
+    }
+
+    /** Timeouts of the operation, {@link TimeoutConfig#DEFAULT} by default. */
+    public Builder idmTimeout(IdmOperation operation, TimeoutConfig config) {
+      this.idmTimeouts.put(operation, config);
+      return this;
+    }
+
+    /**
+     * Whether to send a second search request if the first one takes longer than 95% of the recent
+     * searches, and to use the response that arrives first.
+     */
+    public Builder idmSearchHedging(boolean idmSearchHedging) {
+      this.idmSearchHedging = idmSearchHedging;
+      return this;
+    }
+
+    /** Minimum milliseconds to wait for a search response before sending the second request. */
+    public Builder idmSearchHedgingMinDelay(int idmSearchHedgingMinDelay) {
+      this.idmSearchHedgingMinDelay = idmSearchHedgingMinDelay;
+      return this;
+    }
+
+    /** Retries of the operations, {@link RetryConfig#DEFAULT} by default. */
+    public Builder idmRetries(Map<IdmOperation, RetryConfig> configs) {
+      this.idmRetries.putAll(configs);
+      return this;
+    }
+
+    /** Retries of the operation, {@link RetryConfig#DEFAULT} by default. */
+    public Builder idmRetry(IdmOperation operation, RetryConfig config) {
+      this.idmRetries.put(operation, config);
+      return this;
+    }
+
+    /** Retries allowed per 100 calls, see {@link RetryBudget}. */
+    public Builder idmRetryBudget(int idmRetryBudget) {
+      this.idmRetryBudget = idmRetryBudget;
+      return this;
+    }
+
+    /** Limits of the IDM calls of each tenant, see {@link TenantLimiter}. */
+    public Builder idmTenantLimit(TenantLimitConfig idmTenantLimit) {
+      this.idmTenantLimit = idmTenantLimit;
+      return this;
+    }
   }
 }
@@ -1,34 +1,374 @@
 package org.folio.idmconnect;
 
-import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
-import org.folio.rest.tools.utils.VertxUtils;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.PoolOptions;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+/**
+ * Holds one immutable {@link IdmClient} per Vert.x instance, and one per tenant and Vert.x instance
+ * limited by the {@link TenantLimiter} of the tenant.
+ *
+ * <p>The client is built once by {@link #init(Vertx)} at module startup and shared by all requests.
+ * {@link #setIdmClientConfig(IdmClientConfig)} and {@link #reload()} replace the clients of all
+ * Vert.x instances with ones built from the new configuration and start with an empty {@link
+ * SearchResultCache}. {@link CircuitBreaker}s, the {@link RetryBudget} and {@link TenantLimiter}s
+ * are only replaced if their configuration has changed, as calls still running on the replaced
+ * clients use them. The HTTP client of a replaced client is shut down once its requests have
+ * completed, at the latest after the longest total timeout.
+ */
 public class IdmClientFactory {
 
-  private static WebClient webClientInstance;
+  private static final Logger LOG = LogManager.getLogger(IdmClientFactory.class);
 
-  private static IdmClientConfig idmClientConfig = null;
+  private static final Map<Vertx, IdmClientHolder> clients = new ConcurrentHashMap<>();
+
+  private static volatile IdmClientConfig idmClientConfig = null;
+
+  private static volatile OutboxConfig outboxConfig = null;
+
+  private static volatile BulkConfig bulkConfig = null;
+
+  private static volatile SearchResultCache searchResultCache = null;
+
+  private static volatile Map<IdmOperation, CircuitBreaker> circuitBreakers = null;
+
+  private static volatile RetryBudget retryBudget = null;
+
+  private static volatile Map<String, TenantLimiter> tenantLimiters = new ConcurrentHashMap<>();
 
   private IdmClientFactory() {}
 
-  public static IdmClient create() {
-    IdmClientConfig config =
-        (idmClientConfig == null) ? IdmClientConfig.createFromEnvVars() : idmClientConfig;
-    return new IdmClientImpl(config, getWebClientInstance(config));
+  /** Builds the client for the given Vert.x instance, if not already done. */
+  public static void init(Vertx vertx) {
+    getIdmClient(vertx);
+  }
+
+  /** Returns the shared client of the given Vert.x instance. */
+  public static IdmClient getIdmClient(Vertx vertx) {
+    return getHolder(vertx).idmClient();
+  }
+
+  /**
+   * Returns the client of the given Vert.x instance limited by the {@link TenantLimiter} of the
+   * tenant. The limiter is below the retries, so that each attempt takes a permit and none is held
+   * while waiting to retry.
+   */
+  public static IdmClient getIdmClient(Vertx vertx, String tenantId) {
+    IdmClientHolder holder = getHolder(vertx);
+    return getTenantClient(
+        holder.tenantIdmClients(),
+        tenantId,
+        limiter ->
+            createRetryingClient(
+                vertx,
+                new TenantLimitingIdmClient(
+                    holder.circuitBreakingClient(), holder.config(), limiter),
+                holder.config(),
+                holder.retryBudget()));
+  }
+
+  /**
+   * Returns the client of the given Vert.x instance used by the {@link TransmissionOutbox}, limited
+   * by the {@link TenantLimiter} of the tenant. Its calls are not retried, as the outbox retries
+   * failed transmissions itself.
+   */
+  public static IdmClient getOutboxIdmClient(Vertx vertx, String tenantId) {
+    IdmClientHolder holder = getHolder(vertx);
+    // the outbox retries failed transmissions itself and must not multiply the retries
+    return getTenantClient(
+        holder.tenantOutboxIdmClients(),
+        tenantId,
+        limiter ->
+            new TenantLimitingIdmClient(holder.circuitBreakingClient(), holder.config(), limiter));
+  }
+
+  /** Returns the search result cache shared by all tenants and Vert.x instances. */
+  public static SearchResultCache getSearchResultCache() {
+    SearchResultCache cache = searchResultCache;
+    if (cache == null) {
+      cache = initSearchResultCache();
+    }
+    return cache;
+  }
+
+  /**
+   * Returns the circuit breakers shared by all tenants and Vert.x instances, so that all of them
+   * stop calling an unavailable IDM at the same time.
+   */
+  public static Map<IdmOperation, CircuitBreaker> getCircuitBreakers() {
+    Map<IdmOperation, CircuitBreaker> breakers = circuitBreakers;
+    if (breakers == null) {
+      breakers = initCircuitBreakers();
+    }
+    return breakers;
   }
 
-  public static void setIdmClientConfig(IdmClientConfig idmClientConfig) {
+  /** Returns the retry budget shared by all tenants and Vert.x instances. */
+  public static RetryBudget getRetryBudget() {
+    RetryBudget budget = retryBudget;
+    if (budget == null) {
+      budget = initRetryBudget();
+    }
+    return budget;
+  }
+
+  /**
+   * Returns the limiter of the tenant, shared by all Vert.x instances so that the limits apply to
+   * the whole module instance.
+   */
+  public static TenantLimiter getTenantLimiter(String tenantId) {
+    Map<String, TenantLimiter> limiters = tenantLimiters;
+    TenantLimiter limiter = limiters.get(tenantId);
+    if (limiter == null) {
+      TenantLimitConfig config = getIdmClientConfig().getIdmTenantLimitConfig();
+      limiter = limiters.computeIfAbsent(tenantId, t -> new TenantLimiter(t, config));
+    }
+    return limiter;
+  }
+
+  /** Replaces the configuration and rebuilds the clients of all initialized Vert.x instances. */
+  public static synchronized void setIdmClientConfig(IdmClientConfig idmClientConfig) {
+    IdmClientConfig oldConfig = IdmClientFactory.idmClientConfig;
     IdmClientFactory.idmClientConfig = idmClientConfig;
+    searchResultCache = createSearchResultCache(idmClientConfig);
+    Map<IdmOperation, CircuitBreaker> breakers =
+        oldConfig == null || circuitBreakers == null
+            ? createCircuitBreakers(idmClientConfig)
+            : updateCircuitBreakers(circuitBreakers, oldConfig, idmClientConfig);
+    circuitBreakers = breakers;
+    RetryBudget budget =
+        oldConfig == null
+                || retryBudget == null
+                || oldConfig.getIdmRetryBudget() != idmClientConfig.getIdmRetryBudget()
+            ? new RetryBudget(idmClientConfig.getIdmRetryBudget())
+            : retryBudget;
+    retryBudget = budget;
+    if (oldConfig == null
+        || !oldConfig.getIdmTenantLimitConfig().equals(idmClientConfig.getIdmTenantLimitConfig())) {
+      tenantLimiters = new ConcurrentHashMap<>();
+    }
+    clients.replaceAll(
+        (vertx, oldHolder) -> {
+          // lets running calls, e.g. transmissions of the outbox, complete
+          oldHolder
+              .httpClient()
+              .shutdown(getShutdownTimeout(oldHolder.config()), TimeUnit.MILLISECONDS);
+          return createHolder(vertx, idmClientConfig, breakers, budget);
+        });
+    LOG.info("IDM client configuration reloaded for {} Vert.x instance(s)", clients.size());
+  }
+
+  /**
+   * Re-reads the configuration, the {@link OutboxConfig} and the {@link BulkConfig} from the
+   * environment variables and rebuilds the clients.
+   */
+  public static synchronized void reload() {
+    IdmClientConfig config = IdmClientConfig.createFromEnvVars();
+    OutboxConfig outbox = OutboxConfig.createFromEnvVars();
+    BulkConfig bulk = BulkConfig.createFromEnvVars();
+    outboxConfig = outbox;
+    bulkConfig = bulk;
+    setIdmClientConfig(config);
+  }
+
+  /** Closes and removes the client of the given Vert.x instance. */
+  public static void close(Vertx vertx) {
+    IdmClientHolder holder = clients.remove(vertx);
+    if (holder != null) {
+      holder.httpClient().close();
+    }
+  }
+
+  /** Returns the current configuration, read from the environment variables on first use. */
+  public static synchronized IdmClientConfig getIdmClientConfig() {
+    if (idmClientConfig == null) {
+      idmClientConfig = IdmClientConfig.createFromEnvVars();
+    }
+    return idmClientConfig;
+  }
+
+  /** Returns the outbox configuration, read from the environment variables on first use. */
+  public static synchronized OutboxConfig getOutboxConfig() {
+    if (outboxConfig == null) {
+      outboxConfig = OutboxConfig.createFromEnvVars();
+    }
+    return outboxConfig;
   }
 
-  private static WebClient getWebClientInstance(IdmClientConfig idmClientConfig) {
-    if (webClientInstance == null) {
-      webClientInstance =
-          WebClient.create(
-              VertxUtils.getVertxFromContextOrNew(),
-              new WebClientOptions().setTrustAll(idmClientConfig.isIdmTrustAll()));
+  /** Returns the bulk configuration, read from the environment variables on first use. */
+  public static synchronized BulkConfig getBulkConfig() {
+    if (bulkConfig == null) {
+      bulkConfig = BulkConfig.createFromEnvVars();
     }
-    return webClientInstance;
+    return bulkConfig;
   }
+
+  private static IdmClientHolder getHolder(Vertx vertx) {
+    IdmClientHolder holder = clients.get(vertx);
+    if (holder == null) {
+      IdmClientConfig config = getIdmClientConfig();
+      Map<IdmOperation, CircuitBreaker> breakers = getCircuitBreakers();
+      RetryBudget budget = getRetryBudget();
+      holder = clients.computeIfAbsent(vertx, v -> createHolder(v, config, breakers, budget));
+    }
+    return holder;
+  }
+
+  private static IdmClient getTenantClient(
+      Map<String, IdmClient> tenantClients,
+      String tenantId,
+      Function<TenantLimiter, IdmClient> factory) {
+    IdmClient client = tenantClients.get(tenantId);
+    if (client == null) {
+      TenantLimiter limiter = getTenantLimiter(tenantId);
+      client = tenantClients.computeIfAbsent(tenantId, t -> factory.apply(limiter));
+    }
+    return client;
+  }
+
+  private static synchronized SearchResultCache initSearchResultCache() {
+    if (searchResultCache == null) {
+      searchResultCache = createSearchResultCache(getIdmClientConfig());
+    }
+    return searchResultCache;
+  }
+
+  private static SearchResultCache createSearchResultCache(IdmClientConfig config) {
+    return new SearchResultCache(
+        config.getIdmSearchCacheSize(), config.getIdmSearchCacheTtl(), TimeUnit.SECONDS);
+  }
+
+  private static synchronized Map<IdmOperation, CircuitBreaker> initCircuitBreakers() {
+    if (circuitBreakers == null) {
+      circuitBreakers = createCircuitBreakers(getIdmClientConfig());
+    }
+    return circuitBreakers;
+  }
+
+  private static synchronized RetryBudget initRetryBudget() {
+    if (retryBudget == null) {
+      retryBudget = new RetryBudget(getIdmClientConfig().getIdmRetryBudget());
+    }
+    return retryBudget;
+  }
+
+  private static Map<IdmOperation, CircuitBreaker> createCircuitBreakers(IdmClientConfig config) {
+    Map<IdmOperation, CircuitBreaker> breakers = new EnumMap<>(IdmOperation.class);
+    for (IdmOperation operation : IdmOperation.values()) {
+      breakers.put(
+          operation, new CircuitBreaker(operation, config.getIdmCircuitBreakerConfig(operation)));
+    }
+    return breakers;
+  }
+
+  /**
+   * Returns new circuit breakers for the operations whose configuration has changed and the current
+   * ones for the others.
+   */
+  private static Map<IdmOperation, CircuitBreaker> updateCircuitBreakers(
+      Map<IdmOperation, CircuitBreaker> breakers,
+      IdmClientConfig oldConfig,
+      IdmClientConfig config) {
+    Map<IdmOperation, CircuitBreaker> updated = new EnumMap<>(IdmOperation.class);
+    for (IdmOperation operation : IdmOperation.values()) {
+      CircuitBreakerConfig breakerConfig = config.getIdmCircuitBreakerConfig(operation);
+      updated.put(
+          operation,
+          breakerConfig.equals(oldConfig.getIdmCircuitBreakerConfig(operation))
+              ? breakers.get(operation)
+              : new CircuitBreaker(operation, breakerConfig));
+    }
+    return updated;
+  }
+
+  /**
+   * Returns the milliseconds a replaced HTTP client may take to complete its requests: the longest
+   * total timeout, or the default total timeout if an operation has none.
+   */
+  static long getShutdownTimeout(IdmClientConfig config) {
+    long timeout = 0;
+    for (IdmOperation operation : IdmOperation.values()) {
+      int totalTimeout = config.getIdmTimeoutConfig(operation).totalTimeout();
+      if (totalTimeout == 0) {
+        totalTimeout = TimeoutConfig.DEFAULT.totalTimeout();
+      }
+      timeout = Math.max(timeout, totalTimeout);
+    }
+    return timeout;
+  }
+
+  private static IdmClientHolder createHolder(
+      Vertx vertx,
+      IdmClientConfig config,
+      Map<IdmOperation, CircuitBreaker> breakers,
+      RetryBudget budget) {
+    HttpClient httpClient =
+        vertx.createHttpClient(createHttpClientOptions(config), createPoolOptions(config));
+    // every retry passes the circuit breaker, so retries stop once the circuit opens
+    IdmClient circuitBreakingClient =
+        new CircuitBreakingIdmClient(new IdmClientImpl(config, httpClient), config, breakers);
+    return new IdmClientHolder(
+        config,
+        budget,
+        httpClient,
+        createRetryingClient(vertx, circuitBreakingClient, config, budget),
+        circuitBreakingClient,
+        new ConcurrentHashMap<>(),
+        new ConcurrentHashMap<>());
+  }
+
+  private static IdmClient createRetryingClient(
+      Vertx vertx, IdmClient idmClient, IdmClientConfig config, RetryBudget budget) {
+    // coalescing comes first, so that a search shared by several callers is retried and counted
+    // by the circuit breaker once, and takes a single tenant limiter permit per attempt
+    return new CoalescingIdmClient(new RetryingIdmClient(vertx, idmClient, config, budget));
+  }
+
+  static HttpClientOptions createHttpClientOptions(IdmClientConfig config) {
+    HttpClientOptions options =
+        new HttpClientOptions()
+            .setTrustAll(config.isIdmTrustAll())
+            .setKeepAlive(config.isIdmKeepAlive())
+            .setKeepAliveTimeout(config.getIdmKeepAliveTimeout())
+            .setIdleTimeout(config.getIdmIdleTimeout())
+            .setPipelining(config.isIdmPipelining());
+    if (config.isIdmHttp2()) {
+      options
+          .setProtocolVersion(HttpVersion.HTTP_2)
+          .setUseAlpn(true)
+          .setAlpnVersions(List.of(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1))
+          .setHttp2MultiplexingLimit(config.getIdmHttp2MultiplexingLimit());
+    }
+    return options;
+  }
+
+  static PoolOptions createPoolOptions(IdmClientConfig config) {
+    return new PoolOptions()
+        .setHttp1MaxSize(config.getIdmMaxPoolSize())
+        .setMaxWaitQueueSize(config.getIdmMaxWaitQueueSize());
+  }
+
+  /**
+   * The clients of a Vert.x instance and what they were built with. The tenant maps cache the
+   * clients limited by the {@link TenantLimiter} of each tenant, so that they are not built for
+   * every request; like the limiters they are replaced on reload.
+   */
+  private record IdmClientHolder(
+      IdmClientConfig config,
+      RetryBudget retryBudget,
+      HttpClient httpClient,
+      IdmClient idmClient,
+      IdmClient circuitBreakingClient,
+      Map<String, IdmClient> tenantIdmClients,
+      Map<String, IdmClient> tenantOutboxIdmClients) {}
 }
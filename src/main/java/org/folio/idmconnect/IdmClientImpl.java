@@ -6,30 +6,41 @@ import static io.vertx.core.http.HttpMethod.POST;
 import static io.vertx.core.http.HttpMethod.PUT;
 import static java.time.format.DateTimeFormatter.BASIC_ISO_DATE;
 import static java.util.Optional.ofNullable;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 import static org.folio.idmconnect.Constants.MSG_IDM_CONTRACT_URL_NOT_SET;
 import static org.folio.idmconnect.Constants.MSG_IDM_READER_NUMBER_URL_NOT_SET;
 import static org.folio.idmconnect.Constants.MSG_IDM_URL_NOT_SET;
 
+import io.netty.handler.codec.http.QueryStringEncoder;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.Json;
 import io.vertx.core.net.ProxyOptions;
 import io.vertx.core.net.ProxyType;
-import io.vertx.ext.web.client.HttpRequest;
-import io.vertx.ext.web.client.HttpResponse;
-import io.vertx.ext.web.client.WebClient;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import javax.ws.rs.core.Response;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -38,22 +49,36 @@ import org.folio.rest.jaxrs.model.Contract;
 public class IdmClientImpl implements IdmClient {
 
   private static final Logger LOG = LogManager.getLogger(IdmClientImpl.class);
+  private static final double HEDGING_PERCENTILE = 0.95;
+  private static final int HEDGING_WINDOW = 100;
+  private static final int HEDGING_MIN_SAMPLES = 20;
 
   private final String idmUrl;
   private final String idmContractUrl;
   private final String idmToken;
   private final String idmReaderNumberUrl;
-  private final WebClient webClient;
+  private final HttpClient httpClient;
+  private final ProxyCache proxyCache;
+  private final Map<IdmOperation, TimeoutConfig> timeouts = new EnumMap<>(IdmOperation.class);
+  private final boolean searchHedging;
+  private final long searchHedgingMinDelay;
+  private final LatencyWindow searchLatencies = new LatencyWindow(HEDGING_WINDOW);
 
-  public IdmClientImpl(IdmClientConfig config, WebClient webClient) {
+  public IdmClientImpl(IdmClientConfig config, HttpClient httpClient) {
     idmUrl = config.getIdmUrl();
     idmContractUrl = config.getIdmContractUrl();
     idmReaderNumberUrl = config.getIdmReaderNumberUrl();
     idmToken = config.getIdmToken();
-    this.webClient = webClient;
+    this.httpClient = httpClient;
+    this.proxyCache = new ProxyCache(config.getIdmProxyCacheTtl(), TimeUnit.SECONDS);
+    for (IdmOperation operation : IdmOperation.values()) {
+      timeouts.put(operation, config.getIdmTimeoutConfig(operation));
+    }
+    searchHedging = config.isIdmSearchHedging();
+    searchHedgingMinDelay = config.getIdmSearchHedgingMinDelay();
   }
 
-  private String toBasicIsoDate(String dateString) {
+  static String toBasicIsoDate(String dateString) {
     try {
       return LocalDate.parse(dateString).format(BASIC_ISO_DATE);
     } catch (NullPointerException | DateTimeException e) {
@@ -65,69 +90,220 @@ public class IdmClientImpl implements IdmClient {
     return Response.status(500).header(CONTENT_TYPE, TEXT_PLAIN).entity(o).build();
   }
 
-  private Future<Response> toResponseFuture(AsyncResult<HttpResponse<Buffer>> ar) {
+  private Future<Response> toResponseFuture(AsyncResult<IdmResponse> ar) {
+    return toResponse(ar, body -> body == null ? null : body.toString());
+  }
+
+  /**
+   * Like {@link #toResponseFuture(AsyncResult)}, but keeps the body as bytes. RMB writes them as
+   * they are, so large bodies are neither decoded to a String nor encoded again.
+   */
+  private Future<Response> toBytesResponseFuture(AsyncResult<IdmResponse> ar) {
+    return toResponse(ar, body -> body == null ? null : body.getBytes());
+  }
+
+  private Future<Response> toResponse(AsyncResult<IdmResponse> ar, Function<Buffer, Object> body) {
     if (ar.succeeded()) {
-      HttpResponse<Buffer> bufferHttpResponse = ar.result();
+      IdmResponse idmResponse = ar.result();
       return succeededFuture(
-          Response.status(bufferHttpResponse.statusCode())
-              .header(CONTENT_TYPE, bufferHttpResponse.getHeader(CONTENT_TYPE))
-              .entity(bufferHttpResponse.bodyAsString())
+          Response.status(idmResponse.statusCode())
+              .header(CONTENT_TYPE, idmResponse.headers().get(CONTENT_TYPE))
+              .header(RETRY_AFTER, idmResponse.headers().get(RETRY_AFTER))
+              .entity(body.apply(idmResponse.body()))
               .build());
     } else {
       return succeededFuture(createResponse(ar.cause().getMessage()));
     }
   }
 
-  private HttpRequest<Buffer> createIdmRequest(HttpMethod httpMethod, String requestUri) {
-    return createIdmRequest(httpMethod, requestUri, null);
+  private RequestOptions createIdmRequest(
+      IdmOperation operation, HttpMethod httpMethod, String requestUri) {
+    return createIdmRequest(operation, httpMethod, requestUri, null);
   }
 
-  private HttpRequest<Buffer> createIdmRequest(
-      HttpMethod httpMethod, String requestUri, Map<String, Optional<String>> queryParams) {
-    HttpRequest<Buffer> bufferHttpRequest = webClient.requestAbs(httpMethod, requestUri);
-    getProxyOptions(requestUri).ifPresent(bufferHttpRequest::proxy);
+  private RequestOptions createIdmRequest(
+      IdmOperation operation,
+      HttpMethod httpMethod,
+      String requestUri,
+      Map<String, Optional<String>> queryParams) {
+    RequestOptions requestOptions =
+        new RequestOptions()
+            .setMethod(httpMethod)
+            .setAbsoluteURI(addQueryParams(requestUri, queryParams));
+    proxyCache.get(requestUri).ifPresent(requestOptions::setProxyOptions);
+    TimeoutConfig timeout = timeouts.get(operation);
+    if (timeout.connectTimeout() > 0) {
+      requestOptions.setConnectTimeout(timeout.connectTimeout());
+    }
+    if (timeout.idleTimeout() > 0) {
+      requestOptions.setIdleTimeout(timeout.idleTimeout());
+    }
     if (idmToken != null) {
-      bufferHttpRequest.putHeader(AUTHORIZATION, idmToken);
+      requestOptions.putHeader(AUTHORIZATION, idmToken);
     }
+    return requestOptions;
+  }
 
-    if (queryParams != null) {
-      queryParams.forEach((k, v) -> v.ifPresent(s -> bufferHttpRequest.addQueryParam(k, s)));
+  private static String addQueryParams(String requestUri, Map<String, Optional<String>> queryParams) {
+    if (queryParams == null) {
+      return requestUri;
+    }
+    QueryStringEncoder encoder = new QueryStringEncoder("");
+    queryParams.forEach((k, v) -> v.ifPresent(s -> encoder.addParam(k, s)));
+    String query = encoder.toString();
+    if (query.isEmpty()) {
+      return requestUri;
     }
-    return bufferHttpRequest;
+    return requestUri.contains("?") ? requestUri + "&" + query.substring(1) : requestUri + query;
   }
 
-  private HttpRequest<Buffer> createIdmUBReaderNumberRequest(
-      HttpMethod httpMethod, String requestUri, String unilogin, String readerNumber) {
+  private RequestOptions createIdmUBReaderNumberRequest(
+      IdmOperation operation,
+      HttpMethod httpMethod,
+      String requestUri,
+      String unilogin,
+      String readerNumber) {
     return createIdmRequest(
+        operation,
         httpMethod,
         requestUri,
         Map.of("unilogin", ofNullable(unilogin), "UBReaderNumber", ofNullable(readerNumber)));
   }
 
+  private Future<IdmResponse> send(IdmOperation operation, RequestOptions requestOptions) {
+    return send(operation, requestOptions, null, null);
+  }
+
+  private Future<IdmResponse> sendJson(
+      IdmOperation operation, RequestOptions requestOptions, Object body) {
+    requestOptions.putHeader(CONTENT_TYPE, APPLICATION_JSON);
+    return send(operation, requestOptions, Json.encodeToBuffer(body), null);
+  }
+
+  /**
+   * Sends the request and receives the whole response. The request is reset if the response has not
+   * been received within the total timeout of the operation, or once {@code cancel} completes, so
+   * that the connection is closed instead of staying busy until the IDM answers. The total timeout
+   * starts when the request is sent; obtaining a connection is limited by the connect timeout.
+   *
+   * @param body the body, or null to send none
+   * @param cancel completes when the response is no longer needed, or null
+   */
+  private Future<IdmResponse> send(
+      IdmOperation operation, RequestOptions requestOptions, Buffer body, Future<Void> cancel) {
+    long totalTimeout = timeouts.get(operation).totalTimeout();
+    return httpClient
+        .request(requestOptions)
+        .compose(
+            request -> {
+              Future<IdmResponse> response =
+                  (body == null ? request.send() : request.send(body))
+                      .compose(
+                          r -> r.body().map(b -> new IdmResponse(r.statusCode(), r.headers(), b)));
+              if (cancel != null) {
+                cancel.onComplete(
+                    ar -> {
+                      if (!response.isComplete()) {
+                        request.reset();
+                      }
+                    });
+              }
+              if (totalTimeout <= 0) {
+                return response;
+              }
+              return response
+                  .timeout(totalTimeout, MILLISECONDS)
+                  .onFailure(
+                      e -> {
+                        if (!response.isComplete()) {
+                          request.reset(0, e);
+                        }
+                      });
+            });
+  }
+
+  /** Searches the IDM, see {@link CoalescingIdmClient} for sharing concurrent searches. */
   @Override
   public Future<Response> search(String firstName, String lastName, String dateOfBirth) {
-    return ofNullable(idmUrl)
-        .map(
-            url ->
-                createIdmRequest(
-                        HttpMethod.GET,
-                        idmUrl,
-                        Map.of(
-                            "givenname",
-                            ofNullable(firstName),
-                            "surname",
-                            ofNullable(lastName),
-                            "date_of_birth",
-                            ofNullable(toBasicIsoDate(dateOfBirth))))
-                    .send()
-                    .transform(this::toResponseFuture))
-        .orElse(succeededFuture(createResponse(MSG_IDM_URL_NOT_SET)));
+    if (idmUrl == null) {
+      return succeededFuture(createResponse(MSG_IDM_URL_NOT_SET));
+    }
+    return sendSearch(new SearchKey(firstName, lastName, toBasicIsoDate(dateOfBirth)));
+  }
+
+  /**
+   * Sends the search. With hedging enabled a second request is sent if the first one takes longer
+   * than 95% of the recent searches, and the response that arrives first is used.
+   */
+  private Future<Response> sendSearch(SearchKey key) {
+    long start = System.nanoTime();
+    Promise<Void> cancelFirst = Promise.promise();
+    Future<IdmResponse> first =
+        sendSearchRequest(key, cancelFirst.future())
+            .onSuccess(
+                response ->
+                    searchLatencies.record(NANOSECONDS.toMillis(System.nanoTime() - start)));
+    long hedgingDelay = getHedgingDelay();
+    if (hedgingDelay < 0) {
+      return first.transform(this::toBytesResponseFuture);
+    }
+    return first
+        .timeout(hedgingDelay, MILLISECONDS)
+        .recover(
+            e -> {
+              if (!(e instanceof TimeoutException) || first.isComplete()) {
+                return first;
+              }
+              LOG.debug("Hedging IDM search after {} ms", hedgingDelay);
+              Promise<Void> cancelSecond = Promise.promise();
+              Future<IdmResponse> second = sendSearchRequest(key, cancelSecond.future());
+              return Future.any(first, second)
+                  .map(v -> first.succeeded() ? first.result() : second.result())
+                  .onComplete(
+                      ar -> {
+                        // resets the request that is still running
+                        cancelFirst.tryComplete();
+                        cancelSecond.tryComplete();
+                      });
+            })
+        .transform(this::toBytesResponseFuture);
+  }
+
+  private Future<IdmResponse> sendSearchRequest(SearchKey key, Future<Void> cancel) {
+    RequestOptions requestOptions =
+        createIdmRequest(
+            IdmOperation.SEARCH,
+            HttpMethod.GET,
+            idmUrl,
+            Map.of(
+                "givenname",
+                ofNullable(key.firstName()),
+                "surname",
+                ofNullable(key.lastName()),
+                "date_of_birth",
+                ofNullable(key.dateOfBirth())));
+    return send(IdmOperation.SEARCH, requestOptions, null, cancel);
+  }
+
+  /** Returns the milliseconds to wait before hedging a search, or -1 not to hedge. */
+  private long getHedgingDelay() {
+    if (!searchHedging) {
+      return -1;
+    }
+    long percentile = searchLatencies.percentile(HEDGING_PERCENTILE, HEDGING_MIN_SAMPLES);
+    return percentile < 0 ? -1 : Math.max(percentile, searchHedgingMinDelay);
   }
 
   @Override
   public Future<Response> putContract(Contract contract) {
     return ofNullable(idmContractUrl)
-        .map(url -> createIdmRequest(PUT, url).sendJson(contract).transform(this::toResponseFuture))
+        .map(
+            url ->
+                sendJson(
+                        IdmOperation.PUT_CONTRACT,
+                        createIdmRequest(IdmOperation.PUT_CONTRACT, PUT, url),
+                        contract)
+                    .transform(this::toResponseFuture))
         .orElse(succeededFuture(createResponse(MSG_IDM_CONTRACT_URL_NOT_SET)));
   }
 
@@ -135,28 +311,38 @@ public class IdmClientImpl implements IdmClient {
   public Future<Response> postContract(Contract contract) {
     return ofNullable(idmContractUrl)
         .map(
-            url -> createIdmRequest(POST, url).sendJson(contract).transform(this::toResponseFuture))
+            url ->
+                sendJson(
+                        IdmOperation.POST_CONTRACT,
+                        createIdmRequest(IdmOperation.POST_CONTRACT, POST, url),
+                        contract)
+                    .transform(this::toResponseFuture))
         .orElse(succeededFuture(createResponse(MSG_IDM_CONTRACT_URL_NOT_SET)));
   }
 
   @Override
   public Future<Response> postUBReaderNumber(String unilogin, String readerNumber) {
+    IdmOperation operation = IdmOperation.POST_UB_READER_NUMBER;
     return ofNullable(idmReaderNumberUrl)
         .map(
             url ->
-                createIdmUBReaderNumberRequest(POST, url, unilogin, readerNumber)
-                    .send()
+                send(
+                        operation,
+                        createIdmUBReaderNumberRequest(
+                            operation, POST, url, unilogin, readerNumber))
                     .transform(this::toResponseFuture))
         .orElse(succeededFuture(createResponse(MSG_IDM_READER_NUMBER_URL_NOT_SET)));
   }
 
   @Override
   public Future<Response> deleteUBReaderNumber(String unilogin) {
+    IdmOperation operation = IdmOperation.DELETE_UB_READER_NUMBER;
     return ofNullable(idmReaderNumberUrl)
         .map(
             url ->
-                createIdmUBReaderNumberRequest(DELETE, url, unilogin, null)
-                    .send()
+                send(
+                        operation,
+                        createIdmUBReaderNumberRequest(operation, DELETE, url, unilogin, null))
                     .transform(this::toResponseFuture))
         .orElse(succeededFuture(createResponse(MSG_IDM_READER_NUMBER_URL_NOT_SET)));
   }
@@ -194,4 +380,16 @@ public class IdmClientImpl implements IdmClient {
       return Optional.empty();
     }
   }
+
+  /** The status, headers and body of a response of the IDM; the body is null if it is empty. */
+  private record IdmResponse(int statusCode, MultiMap headers, Buffer body) {
+
+    IdmResponse {
+      if (body != null && body.length() == 0) {
+        body = null;
+      }
+    }
+  }
+
+  private record SearchKey(String firstName, String lastName, String dateOfBirth) {}
 }
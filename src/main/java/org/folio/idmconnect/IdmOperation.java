@@ -0,0 +1,20 @@
+package org.folio.idmconnect;
+
+/** The calls {@link IdmClient} makes to the IDM, used to configure them separately. */
+public enum IdmOperation {
+  SEARCH,
+  PUT_CONTRACT,
+  POST_CONTRACT,
+  POST_UB_READER_NUMBER,
+  DELETE_UB_READER_NUMBER;
+
+  /**
+   * Returns the value of the environment variable with this operation's name appended, for example
+   * {@code IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD_SEARCH}, falling back to the variable without the
+   * suffix and then to the default value.
+   */
+  int getIntEnvVar(String name, int defaultValue) {
+    return IdmClientConfig.getIntEnvVar(
+        name + "_" + name(), IdmClientConfig.getIntEnvVar(name, defaultValue));
+  }
+}
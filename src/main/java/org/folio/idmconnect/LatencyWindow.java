@@ -0,0 +1,37 @@
+package org.folio.idmconnect;
+
+import java.util.Arrays;
+
+/** The latencies of the last calls, to estimate a percentile of the current latency. */
+class LatencyWindow {
+
+  private final long[] latencies;
+  private int count;
+  private int next;
+
+  LatencyWindow(int size) {
+    latencies = new long[size];
+  }
+
+  synchronized void record(long latency) {
+    latencies[next] = latency;
+    next = (next + 1) % latencies.length;
+    count = Math.min(count + 1, latencies.length);
+  }
+
+  /**
+   * Returns the latency below or at which the given share of the recorded latencies lies, or -1 if
+   * fewer than {@code minCount} latencies have been recorded.
+   *
+   * @param percentile share between 0 and 1, for example 0.95
+   */
+  synchronized long percentile(double percentile, int minCount) {
+    if (count == 0 || count < minCount) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile * count) - 1;
+    return sorted[Math.clamp(index, 0, count - 1)];
+  }
+}
@@ -0,0 +1,40 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.IdmClientConfig.getIntEnvVar;
+
+/**
+ * Configuration of the transmission outbox worker.
+ *
+ * @param pollInterval milliseconds between two polls of the outbox, 0 to disable the worker
+ * @param batchSize maximum number of outbox entries claimed per tenant and poll
+ * @param maxAttempts number of attempts after which a transmission is marked as failed
+ * @param retryDelay milliseconds to wait before the first retry, doubled for each further retry
+ * @param maxRetryDelay maximum milliseconds to wait before a retry
+ * @param lease seconds an instance may work on a claimed entry or a synchronous transmission before
+ *     others may claim it again; longer than an IDM call including its retries
+ */
+public record OutboxConfig(
+    int pollInterval,
+    int batchSize,
+    int maxAttempts,
+    int retryDelay,
+    int maxRetryDelay,
+    int lease) {
+
+  public static final String ENVVAR_IDM_OUTBOX_POLL_INTERVAL = "IDM_OUTBOX_POLL_INTERVAL";
+  public static final String ENVVAR_IDM_OUTBOX_BATCH_SIZE = "IDM_OUTBOX_BATCH_SIZE";
+  public static final String ENVVAR_IDM_OUTBOX_MAX_ATTEMPTS = "IDM_OUTBOX_MAX_ATTEMPTS";
+  public static final String ENVVAR_IDM_OUTBOX_RETRY_DELAY = "IDM_OUTBOX_RETRY_DELAY";
+  public static final String ENVVAR_IDM_OUTBOX_MAX_RETRY_DELAY = "IDM_OUTBOX_MAX_RETRY_DELAY";
+  public static final String ENVVAR_IDM_OUTBOX_LEASE = "IDM_OUTBOX_LEASE";
+
+  public static OutboxConfig createFromEnvVars() {
+    return new OutboxConfig(
+        getIntEnvVar(ENVVAR_IDM_OUTBOX_POLL_INTERVAL, 5000),
+        getIntEnvVar(ENVVAR_IDM_OUTBOX_BATCH_SIZE, 10),
+        getIntEnvVar(ENVVAR_IDM_OUTBOX_MAX_ATTEMPTS, 10),
+        getIntEnvVar(ENVVAR_IDM_OUTBOX_RETRY_DELAY, 1000),
+        getIntEnvVar(ENVVAR_IDM_OUTBOX_MAX_RETRY_DELAY, 300000),
+        getIntEnvVar(ENVVAR_IDM_OUTBOX_LEASE, 300));
+  }
+}
@@ -0,0 +1,62 @@
+package org.folio.idmconnect;
+
+import io.vertx.core.net.ProxyOptions;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the HTTP proxy resolved for a target URL. Entries are keyed by scheme, host and port, so
+ * all IDM endpoints on the same server share one lookup.
+ *
+ * <p>With a TTL of 0 a proxy is resolved once and kept for the lifetime of the cache, otherwise it
+ * is resolved again when the entry is older than the TTL.
+ */
+public class ProxyCache {
+
+  private final long ttlNanos;
+  private final Map<String, String> keysByUrl = new ConcurrentHashMap<>();
+  private final Map<String, CachedProxy> proxiesByKey = new ConcurrentHashMap<>();
+
+  public ProxyCache(long ttl, TimeUnit unit) {
+    this.ttlNanos = unit.toNanos(ttl);
+  }
+
+  public Optional<ProxyOptions> get(String targetUrl) {
+    if (targetUrl == null || targetUrl.isEmpty()) {
+      return Optional.empty();
+    }
+    String key = keysByUrl.computeIfAbsent(targetUrl, ProxyCache::toKey);
+    CachedProxy cached = proxiesByKey.get(key);
+    if (cached == null || cached.isExpired(ttlNanos)) {
+      cached = new CachedProxy(IdmClientImpl.getProxyOptions(targetUrl), System.nanoTime());
+      proxiesByKey.put(key, cached);
+    }
+    return cached.proxyOptions();
+  }
+
+  static String toKey(String targetUrl) {
+    try {
+      URI uri = new URI(targetUrl);
+      String scheme = String.valueOf(uri.getScheme()).toLowerCase(Locale.ROOT);
+      String host = String.valueOf(uri.getHost()).toLowerCase(Locale.ROOT);
+      int port = uri.getPort();
+      if (port == -1) {
+        port = "https".equals(scheme) ? 443 : 80;
+      }
+      return scheme + "://" + host + ":" + port;
+    } catch (Exception e) {
+      return targetUrl;
+    }
+  }
+
+  private record CachedProxy(Optional<ProxyOptions> proxyOptions, long resolvedAt) {
+
+    boolean isExpired(long ttlNanos) {
+      return ttlNanos > 0 && System.nanoTime() - resolvedAt > ttlNanos;
+    }
+  }
+}
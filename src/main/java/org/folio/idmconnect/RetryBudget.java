@@ -0,0 +1,72 @@
+package org.folio.idmconnect;
+
+/**
+ * Caps the retries to a share of the calls, so that retries do not multiply the load of an IDM that
+ * is already failing.
+ *
+ * <p>Every call deposits {@code percent / 100} of a token and every retry withdraws one token. The
+ * balance starts with and is capped at {@link #MAX_BALANCE} tokens, which allows a few retries
+ * after quiet periods. A retry is skipped if less than one token is left.
+ */
+public class RetryBudget {
+
+  static final int MAX_BALANCE = 10;
+
+  // in hundredths of a token, so that deposits add up exactly
+  private static final int TOKEN = 100;
+
+  private final int deposit;
+  private int balance = MAX_BALANCE * TOKEN;
+  private long retries;
+  private long recovered;
+  private long exhausted;
+  private long rejected;
+
+  /**
+   * @param percent retries allowed per 100 calls once the initial balance is used up
+   */
+  public RetryBudget(int percent) {
+    if (percent < 0) {
+      throw new IllegalArgumentException(
+          IdmClientConfig.ENVVAR_IDM_RETRY_BUDGET + " must not be negative.");
+    }
+    this.deposit = percent;
+  }
+
+  synchronized void deposit() {
+    balance = Math.min(MAX_BALANCE * TOKEN, balance + deposit);
+  }
+
+  /** Withdraws a token for a retry, returns false if the budget is used up. */
+  synchronized boolean tryWithdraw() {
+    if (balance < TOKEN) {
+      rejected++;
+      return false;
+    }
+    balance -= TOKEN;
+    retries++;
+    return true;
+  }
+
+  /** Records a retried call that finally got a response that needs no retry. */
+  synchronized void recordRecovered() {
+    recovered++;
+  }
+
+  /** Records a retried call that still failed after its last attempt. */
+  synchronized void recordExhausted() {
+    exhausted++;
+  }
+
+  public synchronized Stats getStats() {
+    return new Stats(retries, recovered, exhausted, rejected);
+  }
+
+  /**
+   * @param retries number of retries sent
+   * @param recovered number of retried calls that finally got a response that needs no retry
+   * @param exhausted number of retried calls that still failed after the last attempt
+   * @param rejected number of retries skipped because the budget was used up
+   */
+  public record Stats(long retries, long recovered, long exhausted, long rejected) {}
+}
@@ -0,0 +1,55 @@
+package org.folio.idmconnect;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Retries of one {@link IdmOperation}. Only the idempotent operations {@code SEARCH}, {@code
+ * PUT_CONTRACT} and {@code DELETE_UB_READER_NUMBER} are retried.
+ *
+ * @param maxAttempts maximum number of attempts including the first one, 1 to disable retries
+ * @param retryDelay milliseconds to wait before the first retry, doubled for each further retry
+ * @param maxRetryDelay maximum milliseconds to wait before a retry; a response whose {@code
+ *     Retry-After} asks for a longer wait is not retried
+ */
+public record RetryConfig(int maxAttempts, int retryDelay, int maxRetryDelay) {
+
+  public static final String ENVVAR_IDM_RETRY_MAX_ATTEMPTS = "IDM_RETRY_MAX_ATTEMPTS";
+  public static final String ENVVAR_IDM_RETRY_DELAY = "IDM_RETRY_DELAY";
+  public static final String ENVVAR_IDM_RETRY_MAX_DELAY = "IDM_RETRY_MAX_DELAY";
+  public static final RetryConfig DEFAULT = new RetryConfig(3, 100, 2000);
+
+  public RetryConfig {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException(ENVVAR_IDM_RETRY_MAX_ATTEMPTS + " must be positive.");
+    }
+    if (retryDelay < 0) {
+      throw new IllegalArgumentException(ENVVAR_IDM_RETRY_DELAY + " must not be negative.");
+    }
+    if (maxRetryDelay < retryDelay) {
+      throw new IllegalArgumentException(
+          ENVVAR_IDM_RETRY_MAX_DELAY + " must not be less than " + ENVVAR_IDM_RETRY_DELAY + ".");
+    }
+  }
+
+  /**
+   * Reads the retries of the operation from the environment variables. A variable with the
+   * operation appended, like {@code IDM_RETRY_MAX_ATTEMPTS_SEARCH}, overrides the one for all
+   * operations.
+   */
+  public static RetryConfig createFromEnvVars(IdmOperation operation) {
+    return new RetryConfig(
+        operation.getIntEnvVar(ENVVAR_IDM_RETRY_MAX_ATTEMPTS, DEFAULT.maxAttempts()),
+        operation.getIntEnvVar(ENVVAR_IDM_RETRY_DELAY, DEFAULT.retryDelay()),
+        operation.getIntEnvVar(ENVVAR_IDM_RETRY_MAX_DELAY, DEFAULT.maxRetryDelay()));
+  }
+
+  /** Reads the retries of all operations from the environment variables. */
+  public static Map<IdmOperation, RetryConfig> createFromEnvVars() {
+    Map<IdmOperation, RetryConfig> configs = new EnumMap<>(IdmOperation.class);
+    for (IdmOperation operation : IdmOperation.values()) {
+      configs.put(operation, createFromEnvVars(operation));
+    }
+    return configs;
+  }
+}
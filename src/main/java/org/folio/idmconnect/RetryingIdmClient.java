@@ -0,0 +1,156 @@
+package org.folio.idmconnect;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.Contract;
+
+/**
+ * Decorates an {@link IdmClient} with retries of the idempotent operations {@code search}, {@code
+ * putContract} and {@code deleteUBReaderNumber}.
+ *
+ * <p>Responses that indicate IDM unavailability ({@code 5xx}, {@code 408}, {@code 429}) are retried
+ * with exponential backoff and jitter, but not earlier than a {@code Retry-After} header asks for.
+ * The rejection of a call by a {@link TenantLimiter} below this client is returned at once. All
+ * retries are limited by a shared {@link RetryBudget}. Operations whose IDM URL is not configured
+ * are not retried.
+ */
+public class RetryingIdmClient implements IdmClient {
+
+  private static final Logger LOG = LogManager.getLogger(RetryingIdmClient.class);
+
+  private final Vertx vertx;
+  private final IdmClient idmClient;
+  private final IdmClientConfig config;
+  private final RetryBudget retryBudget;
+
+  public RetryingIdmClient(
+      Vertx vertx, IdmClient idmClient, IdmClientConfig config, RetryBudget retryBudget) {
+    this.vertx = vertx;
+    this.idmClient = idmClient;
+    this.config = config;
+    this.retryBudget = retryBudget;
+  }
+
+  private Future<Response> execute(
+      IdmOperation operation, String url, Supplier<Future<Response>> call) {
+    if (url == null) {
+      return call.get();
+    }
+    retryBudget.deposit();
+    return attempt(operation, config.getIdmRetryConfig(operation), call, 1);
+  }
+
+  private Future<Response> attempt(
+      IdmOperation operation, RetryConfig retry, Supplier<Future<Response>> call, int attempt) {
+    return call.get()
+        .compose(
+            response -> {
+              if (!isRetryable(response)) {
+                if (attempt > 1) {
+                  retryBudget.recordRecovered();
+                }
+                return Future.succeededFuture(response);
+              }
+              long retryAfter = getRetryAfter(response, Instant.now());
+              if (attempt >= retry.maxAttempts()
+                  || retryAfter > retry.maxRetryDelay()
+                  || !retryBudget.tryWithdraw()) {
+                if (attempt > 1) {
+                  retryBudget.recordExhausted();
+                }
+                return Future.succeededFuture(response);
+              }
+              long delay =
+                  Math.max(
+                      retryAfter,
+                      Backoff.delay(attempt, retry.retryDelay(), retry.maxRetryDelay()));
+              LOG.debug(
+                  "IDM {} failed with status {}, retrying in {} ms",
+                  operation,
+                  response.getStatus(),
+                  delay);
+              return vertx
+                  .timer(Math.max(delay, 1), MILLISECONDS)
+                  .compose(v -> attempt(operation, retry, call, attempt + 1));
+            });
+  }
+
+  /** Whether the response indicates IDM unavailability, so that the call may succeed later. */
+  static boolean isRetryable(Response response) {
+    int status = response.getStatus();
+    return status >= 500
+        || status == 408
+        || (status == 429 && !TenantLimiter.isRejection(response));
+  }
+
+  /**
+   * Returns the milliseconds the {@code Retry-After} header of the response asks to wait, 0 if
+   * there is no valid header.
+   */
+  static long getRetryAfter(Response response, Instant now) {
+    String retryAfter = response.getHeaderString(RETRY_AFTER);
+    if (retryAfter == null || retryAfter.isBlank()) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+    } catch (NumberFormatException e) {
+      // not delay-seconds, try an HTTP-date
+    }
+    try {
+      ZonedDateTime date =
+          ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+      return Math.max(0, Duration.between(now, date.toInstant()).toMillis());
+    } catch (DateTimeParseException e) {
+      return 0;
+    }
+  }
+
+  @Override
+  public Future<Response> search(String firstName, String lastName, String dateOfBirth) {
+    return execute(
+        IdmOperation.SEARCH,
+        config.getIdmUrl(),
+        () -> idmClient.search(firstName, lastName, dateOfBirth));
+  }
+
+  @Override
+  public Future<Response> putContract(Contract contract) {
+    return execute(
+        IdmOperation.PUT_CONTRACT,
+        config.getIdmContractUrl(),
+        () -> idmClient.putContract(contract));
+  }
+
+  /** Not retried, a retry after a lost response could create the contract twice. */
+  @Override
+  public Future<Response> postContract(Contract contract) {
+    return idmClient.postContract(contract);
+  }
+
+  /** Not retried, the IDM does not guarantee that setting a reader number is idempotent. */
+  @Override
+  public Future<Response> postUBReaderNumber(String unilogin, String readerNumber) {
+    return idmClient.postUBReaderNumber(unilogin, readerNumber);
+  }
+
+  @Override
+  public Future<Response> deleteUBReaderNumber(String unilogin) {
+    return execute(
+        IdmOperation.DELETE_UB_READER_NUMBER,
+        config.getIdmReaderNumberUrl(),
+        () -> idmClient.deleteUBReaderNumber(unilogin));
+  }
+}
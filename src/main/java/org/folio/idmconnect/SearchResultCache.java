@@ -0,0 +1,131 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+import io.vertx.core.Future;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+
+/**
+ * Bounded LRU cache for IDM search results with a time to live.
+ *
+ * <p>Entries are isolated per tenant and keyed by the normalized first name, last name and date of
+ * birth. Only successful (2xx) responses are cached. A cache with a maximum size of 0 is disabled
+ * and forwards every search.
+ */
+public class SearchResultCache {
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final Map<Key, CachedResponse> entries;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public SearchResultCache(int maxSize, long ttl, TimeUnit unit) {
+    this.maxSize = maxSize;
+    this.ttlNanos = unit.toNanos(ttl);
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, CachedResponse> eldest) {
+            if (size() > SearchResultCache.this.maxSize) {
+              evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Returns the cached response for the search or calls {@code search} and caches its result.
+   *
+   * @param bypass if true the cache is not read, but a successful result is still stored
+   */
+  public Future<Response> get(
+      String tenant,
+      String firstName,
+      String lastName,
+      String dateOfBirth,
+      boolean bypass,
+      Supplier<Future<Response>> search) {
+    if (maxSize <= 0) {
+      return search.get();
+    }
+    Key key = new Key(tenant, normalize(firstName), normalize(lastName), dateOfBirth);
+    if (!bypass) {
+      CachedResponse cached = lookup(key);
+      if (cached != null) {
+        return Future.succeededFuture(cached.toResponse());
+      }
+    }
+    return search
+        .get()
+        .onSuccess(
+            response -> {
+              if (response.getStatus() / 100 == 2) {
+                put(key, CachedResponse.of(response));
+              }
+            });
+  }
+
+  public synchronized Stats getStats() {
+    return new Stats(hits, misses, evictions, entries.size());
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private synchronized CachedResponse lookup(Key key) {
+    CachedResponse cached = entries.get(key);
+    if (cached != null && System.nanoTime() - cached.storedAt() > ttlNanos) {
+      entries.remove(key);
+      evictions++;
+      cached = null;
+    }
+    if (cached == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return cached;
+  }
+
+  private synchronized void put(Key key, CachedResponse response) {
+    entries.put(key, response);
+  }
+
+  private static String normalize(String value) {
+    return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+  }
+
+  public record Stats(long hits, long misses, long evictions, int size) {}
+
+  private record Key(String tenant, String firstName, String lastName, String dateOfBirth) {
+
+    Key {
+      dateOfBirth = IdmClientImpl.toBasicIsoDate(dateOfBirth);
+    }
+  }
+
+  private record CachedResponse(int status, String contentType, Object entity, long storedAt) {
+
+    static CachedResponse of(Response response) {
+      return new CachedResponse(
+          response.getStatus(),
+          response.getHeaderString(CONTENT_TYPE),
+          response.getEntity(),
+          System.nanoTime());
+    }
+
+    Response toResponse() {
+      return Response.status(status).header(CONTENT_TYPE, contentType).entity(entity).build();
+    }
+  }
+}
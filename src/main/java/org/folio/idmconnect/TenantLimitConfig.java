@@ -0,0 +1,43 @@
+package org.folio.idmconnect;
+
+/**
+ * Limits of the IDM calls of each tenant, see {@link TenantLimiter}.
+ *
+ * @param maxInFlight maximum number of concurrent calls of a tenant, 0 for no limit
+ * @param rateLimit calls per second a tenant may start on average, 0 for no limit
+ * @param rateBurst calls a tenant may start at once after a quiet period, 0 for {@code rateLimit}
+ */
+public record TenantLimitConfig(int maxInFlight, int rateLimit, int rateBurst) {
+
+  public static final String ENVVAR_IDM_TENANT_MAX_IN_FLIGHT = "IDM_TENANT_MAX_IN_FLIGHT";
+  public static final String ENVVAR_IDM_TENANT_RATE_LIMIT = "IDM_TENANT_RATE_LIMIT";
+  public static final String ENVVAR_IDM_TENANT_RATE_BURST = "IDM_TENANT_RATE_BURST";
+
+  public static final TenantLimitConfig DEFAULT = new TenantLimitConfig(0, 0, 0);
+
+  public TenantLimitConfig {
+    if (maxInFlight < 0) {
+      throw new IllegalArgumentException(
+          ENVVAR_IDM_TENANT_MAX_IN_FLIGHT + " must not be negative.");
+    }
+    if (rateLimit < 0) {
+      throw new IllegalArgumentException(ENVVAR_IDM_TENANT_RATE_LIMIT + " must not be negative.");
+    }
+    if (rateBurst < 0) {
+      throw new IllegalArgumentException(ENVVAR_IDM_TENANT_RATE_BURST + " must not be negative.");
+    }
+  }
+
+  /** Reads the limits from the environment variables. */
+  public static TenantLimitConfig createFromEnvVars() {
+    return new TenantLimitConfig(
+        IdmClientConfig.getIntEnvVar(ENVVAR_IDM_TENANT_MAX_IN_FLIGHT, DEFAULT.maxInFlight()),
+        IdmClientConfig.getIntEnvVar(ENVVAR_IDM_TENANT_RATE_LIMIT, DEFAULT.rateLimit()),
+        IdmClientConfig.getIntEnvVar(ENVVAR_IDM_TENANT_RATE_BURST, DEFAULT.rateBurst()));
+  }
+
+  /** Number of calls the token bucket holds. */
+  public int bucketSize() {
+    return rateBurst > 0 ? rateBurst : rateLimit;
+  }
+}
@@ -0,0 +1,124 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+
+import io.vertx.core.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+
+/**
+ * Bulkhead and rate limiter for the IDM calls of one tenant, so that a bulk action of one tenant
+ * cannot use up the connections to the IDM shared by all tenants.
+ *
+ * <p>A call is rejected with a 429 instead of waiting if the tenant already has {@code maxInFlight}
+ * calls running, or if its token bucket is empty. The bucket holds {@code rateBurst} tokens, is
+ * refilled with {@code rateLimit} tokens per second and every call takes one token.
+ */
+public class TenantLimiter {
+
+  /** Reason phrase of the 429 of a rejected call, which tells it apart from a 429 of the IDM. */
+  static final String REJECTION_REASON = "Tenant Limit Exceeded";
+
+  private final String tenantId;
+  private final TenantLimitConfig config;
+  private final LongSupplier nanoTime;
+  private final long nanosPerToken;
+  private int inFlight;
+  private double tokens;
+  private long refilledAt;
+  private long bulkheadRejected;
+  private long rateLimited;
+
+  public TenantLimiter(String tenantId, TenantLimitConfig config) {
+    this(tenantId, config, System::nanoTime);
+  }
+
+  TenantLimiter(String tenantId, TenantLimitConfig config, LongSupplier nanoTime) {
+    this.tenantId = tenantId;
+    this.config = config;
+    this.nanoTime = nanoTime;
+    this.nanosPerToken =
+        config.rateLimit() > 0 ? TimeUnit.SECONDS.toNanos(1) / config.rateLimit() : 0;
+    this.tokens = config.bucketSize();
+    this.refilledAt = nanoTime.getAsLong();
+  }
+
+  /**
+   * Calls {@code call} if the tenant is within its limits.
+   *
+   * @return the result of the call, or a 429 response with a {@code Retry-After} header if the
+   *     tenant is over a limit
+   */
+  public Future<Response> execute(Supplier<Future<Response>> call) {
+    String rejection = acquire();
+    if (rejection != null) {
+      // with at least one token per second the next token is at most one second away
+      return Future.succeededFuture(
+          Response.status(429, REJECTION_REASON)
+              .header(CONTENT_TYPE, TEXT_PLAIN)
+              .header(RETRY_AFTER, 1)
+              .entity(rejection)
+              .build());
+    }
+    Future<Response> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      future = Future.failedFuture(e);
+    }
+    return future.onComplete(ar -> release());
+  }
+
+  /** Whether the response is the rejection of a call by a tenant limiter. */
+  public static boolean isRejection(Response response) {
+    return response.getStatus() == 429
+        && REJECTION_REASON.equals(response.getStatusInfo().getReasonPhrase());
+  }
+
+  public synchronized Stats getStats() {
+    return new Stats(inFlight, bulkheadRejected, rateLimited);
+  }
+
+  /** Returns null if the call may pass, otherwise the reason of the rejection. */
+  private synchronized String acquire() {
+    if (config.maxInFlight() > 0 && inFlight >= config.maxInFlight()) {
+      bulkheadRejected++;
+      return "Too many concurrent IDM requests of tenant "
+          + tenantId
+          + ", the limit is "
+          + config.maxInFlight()
+          + ".";
+    }
+    if (config.rateLimit() > 0) {
+      long now = nanoTime.getAsLong();
+      tokens = Math.min(config.bucketSize(), tokens + (double) (now - refilledAt) / nanosPerToken);
+      refilledAt = now;
+      if (tokens < 1) {
+        rateLimited++;
+        return "Too many IDM requests of tenant "
+            + tenantId
+            + ", the limit is "
+            + config.rateLimit()
+            + " per second.";
+      }
+      tokens--;
+    }
+    inFlight++;
+    return null;
+  }
+
+  private synchronized void release() {
+    inFlight--;
+  }
+
+  /**
+   * @param inFlight number of calls running
+   * @param bulkheadRejected number of calls rejected because too many calls were running
+   * @param rateLimited number of calls rejected because the rate limit was exceeded
+   */
+  public record Stats(int inFlight, long bulkheadRejected, long rateLimited) {}
+}
@@ -0,0 +1,59 @@
+package org.folio.idmconnect;
+
+import io.vertx.core.Future;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+import org.folio.rest.jaxrs.model.Contract;
+
+/**
+ * Decorates the {@link IdmClient} with the {@link TenantLimiter} of the calling tenant.
+ *
+ * <p>Operations whose IDM URL is not configured bypass the limiter, so that the error about the
+ * missing environment variable is not replaced by a 429.
+ */
+public class TenantLimitingIdmClient implements IdmClient {
+
+  private final IdmClient idmClient;
+  private final IdmClientConfig config;
+  private final TenantLimiter tenantLimiter;
+
+  public TenantLimitingIdmClient(
+      IdmClient idmClient, IdmClientConfig config, TenantLimiter tenantLimiter) {
+    this.idmClient = idmClient;
+    this.config = config;
+    this.tenantLimiter = tenantLimiter;
+  }
+
+  private Future<Response> execute(String url, Supplier<Future<Response>> call) {
+    if (url == null) {
+      return call.get();
+    }
+    return tenantLimiter.execute(call);
+  }
+
+  @Override
+  public Future<Response> search(String firstName, String lastName, String dateOfBirth) {
+    return execute(config.getIdmUrl(), () -> idmClient.search(firstName, lastName, dateOfBirth));
+  }
+
+  @Override
+  public Future<Response> putContract(Contract contract) {
+    return execute(config.getIdmContractUrl(), () -> idmClient.putContract(contract));
+  }
+
+  @Override
+  public Future<Response> postContract(Contract contract) {
+    return execute(config.getIdmContractUrl(), () -> idmClient.postContract(contract));
+  }
+
+  @Override
+  public Future<Response> postUBReaderNumber(String unilogin, String readerNumber) {
+    return execute(
+        config.getIdmReaderNumberUrl(), () -> idmClient.postUBReaderNumber(unilogin, readerNumber));
+  }
+
+  @Override
+  public Future<Response> deleteUBReaderNumber(String unilogin) {
+    return execute(config.getIdmReaderNumberUrl(), () -> idmClient.deleteUBReaderNumber(unilogin));
+  }
+}
@@ -0,0 +1,54 @@
+package org.folio.idmconnect;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timeouts of the requests of one {@link IdmOperation}, all in milliseconds.
+ *
+ * @param connectTimeout maximum time to establish a connection to the IDM, 0 for the default of the
+ *     HTTP client
+ * @param idleTimeout maximum time without receiving data of the response, 0 to disable
+ * @param totalTimeout maximum time from sending the request to receiving the whole response, 0 to
+ *     disable
+ */
+public record TimeoutConfig(int connectTimeout, int idleTimeout, int totalTimeout) {
+
+  public static final String ENVVAR_IDM_TIMEOUT_CONNECT = "IDM_TIMEOUT_CONNECT";
+  public static final String ENVVAR_IDM_TIMEOUT_IDLE = "IDM_TIMEOUT_IDLE";
+  public static final String ENVVAR_IDM_TIMEOUT_TOTAL = "IDM_TIMEOUT_TOTAL";
+  public static final TimeoutConfig DEFAULT = new TimeoutConfig(5000, 30000, 60000);
+
+  public TimeoutConfig {
+    if (connectTimeout < 0) {
+      throw new IllegalArgumentException(ENVVAR_IDM_TIMEOUT_CONNECT + " must not be negative.");
+    }
+    if (idleTimeout < 0) {
+      throw new IllegalArgumentException(ENVVAR_IDM_TIMEOUT_IDLE + " must not be negative.");
+    }
+    if (totalTimeout < 0) {
+      throw new IllegalArgumentException(ENVVAR_IDM_TIMEOUT_TOTAL + " must not be negative.");
+    }
+  }
+
+  /**
+   * Reads the timeouts of the operation from the environment variables. A variable with the
+   * operation appended, like {@code IDM_TIMEOUT_TOTAL_SEARCH}, overrides the one for all
+   * operations.
+   */
+  public static TimeoutConfig createFromEnvVars(IdmOperation operation) {
+    return new TimeoutConfig(
+        operation.getIntEnvVar(ENVVAR_IDM_TIMEOUT_CONNECT, DEFAULT.connectTimeout()),
+        operation.getIntEnvVar(ENVVAR_IDM_TIMEOUT_IDLE, DEFAULT.idleTimeout()),
+        operation.getIntEnvVar(ENVVAR_IDM_TIMEOUT_TOTAL, DEFAULT.totalTimeout()));
+  }
+
+  /** Reads the timeouts of all operations from the environment variables. */
+  public static Map<IdmOperation, TimeoutConfig> createFromEnvVars() {
+    Map<IdmOperation, TimeoutConfig> configs = new EnumMap<>(IdmOperation.class);
+    for (IdmOperation operation : IdmOperation.values()) {
+      configs.put(operation, createFromEnvVars(operation));
+    }
+    return configs;
+  }
+}
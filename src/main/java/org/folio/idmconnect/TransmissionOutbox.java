@@ -0,0 +1,201 @@
+package org.folio.idmconnect;
+
+import static io.vertx.core.Future.succeededFuture;
+import static org.folio.idmconnect.Constants.JSONB_FIELD_STATUS;
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
+import static org.folio.idmconnect.Constants.TABLE_NAME_OUTBOX;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.ws.rs.core.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.dbschema.ObjectMapperTool;
+import org.folio.rest.jaxrs.model.Contract;
+import org.folio.rest.jaxrs.model.Contract.Status;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Outbox of the contracts of one tenant waiting for an asynchronous transmission to the IDM.
+ *
+ * <p>{@link #enqueue(String)} claims the contract like a synchronous transmission, but without a
+ * lease, so that the entry is due right away. {@link #process()} is called periodically by the
+ * {@link TransmissionOutboxVerticle}: it claims due entries with {@code FOR UPDATE SKIP LOCKED} and
+ * a lease, so that several module instances can drain the outbox in parallel, sends the contracts
+ * to the IDM and either writes the final status or schedules a retry with exponential backoff.
+ * Synchronous transmissions whose lease has expired are taken over the same way. Like a synchronous
+ * transmission, every claim records a new lease id, and the result is only written while the entry
+ * still holds it.
+ */
+public class TransmissionOutbox {
+
+  public static final String MSG_SCHEDULED = "Transmission of contract scheduled";
+
+  private static final Logger LOG = LogManager.getLogger(TransmissionOutbox.class);
+
+  private final PostgresClient pgClient;
+  private final ContractTransmitter transmitter;
+  private final OutboxConfig config;
+  private final int concurrency;
+  private final String claimSql;
+  private final String dropSql;
+  private final String completeSql;
+  private final String retrySql;
+
+  public TransmissionOutbox(
+      PostgresClient pgClient,
+      String tenantId,
+      IdmClient idmClient,
+      OutboxConfig config,
+      int concurrency) {
+    this.pgClient = pgClient;
+    this.transmitter = new ContractTransmitter(pgClient, tenantId, idmClient, config.lease());
+    this.config = config;
+    this.concurrency = concurrency;
+    String schema = PostgresClient.convertToPsqlStandard(tenantId);
+    String contracts = schema + "." + TABLE_NAME_CONTRACTS;
+    String outbox = schema + "." + TABLE_NAME_OUTBOX;
+    String status = "jsonb->>'" + JSONB_FIELD_STATUS + "'";
+    this.claimSql =
+        "UPDATE "
+            + outbox
+            + " o SET attempts = o.attempts + 1, locked_until = now() + make_interval(secs =>"
+            + " $2::int), lease_id = $3 FROM (SELECT contract_id FROM "
+            + outbox
+            + " WHERE next_attempt_at <= now() AND (locked_until IS NULL OR locked_until < now())"
+            + " ORDER BY next_attempt_at LIMIT $1::int FOR UPDATE SKIP LOCKED) due, "
+            + contracts
+            + " c WHERE o.contract_id = due.contract_id AND c.id = o.contract_id"
+            + " RETURNING o.attempts, o.previous_status, c.jsonb";
+    this.dropSql = "DELETE FROM " + outbox + " WHERE contract_id = $1 AND lease_id = $2";
+    this.completeSql =
+        "WITH done AS (DELETE FROM "
+            + outbox
+            + " WHERE contract_id = $1 AND lease_id = $4 RETURNING contract_id) UPDATE "
+            + contracts
+            + " c SET jsonb = jsonb_set(c.jsonb, '{"
+            + JSONB_FIELD_STATUS
+            + "}', to_jsonb($2::text)) FROM done WHERE c.id = done.contract_id AND c."
+            + status
+            + " = $3";
+    this.retrySql =
+        "UPDATE "
+            + outbox
+            + " SET next_attempt_at = now() + make_interval(secs => $2::float8), locked_until ="
+            + " NULL, lease_id = NULL, last_error = $3 WHERE contract_id = $1 AND lease_id = $4";
+  }
+
+  /**
+   * Claims the contract with the given id and adds it to the outbox.
+   *
+   * @return a 202 response if the transmission has been scheduled, a 404 response if the contract
+   *     does not exist or a 409 response if a transmission of the contract is already in progress
+   */
+  public Future<Response> enqueue(String id) {
+    UUID uuid = ContractTransmitter.toUuid(id);
+    if (uuid == null) {
+      return succeededFuture(
+          ContractTransmitter.createResponse(404, ContractTransmitter.MSG_NOT_FOUND));
+    }
+    return transmitter
+        .claim(List.of(uuid), null, null)
+        .compose(
+            contracts ->
+                contracts.isEmpty()
+                    ? transmitter.rejectClaim(id)
+                    : succeededFuture(ContractTransmitter.createResponse(202, MSG_SCHEDULED)));
+  }
+
+  /**
+   * Transmits the due entries of the outbox, at most {@link OutboxConfig#batchSize()}.
+   *
+   * @return the number of processed entries
+   */
+  public Future<Integer> process() {
+    UUID leaseId = UUID.randomUUID();
+    return pgClient
+        .execute(claimSql, Tuple.of(config.batchSize(), config.lease(), leaseId))
+        .compose(
+            rows -> {
+              List<Entry> entries = new ArrayList<>(rows.rowCount());
+              rows.forEach(row -> entries.add(Entry.of(row, leaseId)));
+              return FutureUtils.mapWithConcurrency(entries, concurrency, this::process)
+                  .map(v -> entries.size());
+            });
+  }
+
+  private Future<Void> process(Entry entry) {
+    Contract contract = entry.contract();
+    if (contract.getStatus() != Status.TRANSMISSION_IN_PROGRESS) {
+      // the contract was changed after it had been added to the outbox, only drop the entry
+      return pgClient
+          .execute(dropSql, Tuple.of(UUID.fromString(contract.getId()), entry.leaseId()))
+          .mapEmpty();
+    }
+    contract.setStatus(entry.previousStatus());
+    return transmitter
+        .send(contract)
+        .compose(
+            response -> {
+              boolean succeeded = ContractTransmitter.isSucceeded(response);
+              if (!succeeded
+                  && RetryingIdmClient.isRetryable(response)
+                  && entry.attempts() < config.maxAttempts()) {
+                return retry(entry, response);
+              }
+              return complete(
+                  entry, ContractTransmitter.nextStatus(entry.previousStatus(), succeeded));
+            })
+        .recover(
+            t -> {
+              LOG.error("Processing outbox entry of contract {} failed", contract.getId(), t);
+              return succeededFuture();
+            });
+  }
+
+  private Future<Void> complete(Entry entry, Status status) {
+    return pgClient
+        .execute(
+            completeSql,
+            Tuple.of(
+                UUID.fromString(entry.contract().getId()),
+                status.value(),
+                Status.TRANSMISSION_IN_PROGRESS.value(),
+                entry.leaseId()))
+        .mapEmpty();
+  }
+
+  private Future<Void> retry(Entry entry, Response response) {
+    String id = entry.contract().getId();
+    long delay = Backoff.delay(entry.attempts(), config.retryDelay(), config.maxRetryDelay());
+    LOG.info(
+        "Transmission of contract {} failed with status {}, retrying in {} ms",
+        id,
+        response.getStatus(),
+        delay);
+    return pgClient
+        .execute(
+            retrySql,
+            Tuple.of(
+                UUID.fromString(id),
+                delay / 1000.0,
+                response.getStatus() + " " + String.valueOf(response.getEntity()),
+                entry.leaseId()))
+        .mapEmpty();
+  }
+
+  private record Entry(int attempts, Status previousStatus, Contract contract, UUID leaseId) {
+
+    static Entry of(Row row, UUID leaseId) {
+      return new Entry(
+          row.getInteger("attempts"),
+          Status.fromValue(row.getString("previous_status")),
+          ObjectMapperTool.readValue(row.getJsonObject("jsonb").encode(), Contract.class),
+          leaseId);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.folio.idmconnect;
+
+import static org.folio.idmconnect.Constants.TABLE_NAME_OUTBOX;
+
+import io.vertx.core.Future;
+import io.vertx.core.VerticleBase;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Periodically drains the transmission outboxes of all tenants the module is enabled for.
+ *
+ * <p>Tenants are processed one after another; a poll is skipped while the previous one is still
+ * running. The tenants are looked up in the database at most every {@link #TENANT_REFRESH_INTERVAL}
+ * milliseconds, so a newly enabled tenant is picked up with that delay.
+ */
+public class TransmissionOutboxVerticle extends VerticleBase {
+
+  private static final Logger LOG = LogManager.getLogger(TransmissionOutboxVerticle.class);
+
+  static final long TENANT_REFRESH_INTERVAL = 60000;
+
+  private long timerId = -1;
+  private boolean polling;
+  private List<String> tenants;
+  private long tenantsFoundAt;
+
+  @Override
+  public Future<?> start() {
+    OutboxConfig config = IdmClientFactory.getOutboxConfig();
+    if (config.pollInterval() <= 0) {
+      LOG.info("Transmission outbox worker disabled");
+      return Future.succeededFuture();
+    }
+    timerId = vertx.setPeriodic(config.pollInterval(), id -> poll());
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<?> stop() {
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+    }
+    return Future.succeededFuture();
+  }
+
+  private void poll() {
+    if (polling) {
+      return;
+    }
+    polling = true;
+    // Future.future fails the future on a synchronous throw, so that polling is always reset
+    Future.<Void>future(promise -> getTenants().compose(this::processTenants).onComplete(promise))
+        .onFailure(t -> LOG.error("Polling the transmission outbox failed", t))
+        .onComplete(ar -> polling = false);
+  }
+
+  private Future<List<String>> getTenants() {
+    long now = System.currentTimeMillis();
+    if (tenants != null && now - tenantsFoundAt < TENANT_REFRESH_INTERVAL) {
+      return Future.succeededFuture(tenants);
+    }
+    return findTenants()
+        .onSuccess(
+            found -> {
+              tenants = found;
+              tenantsFoundAt = now;
+            });
+  }
+
+  private Future<List<String>> findTenants() {
+    String suffix = "_" + PostgresClient.getModuleName();
+    return PostgresClient.getInstance(vertx)
+        .execute(
+            "SELECT table_schema FROM information_schema.tables WHERE table_name = $1",
+            Tuple.of(TABLE_NAME_OUTBOX))
+        .map(
+            rows -> {
+              List<String> tenants = new ArrayList<>();
+              rows.forEach(
+                  row -> {
+                    String schema = row.getString(0);
+                    if (schema.endsWith(suffix)) {
+                      tenants.add(schema.substring(0, schema.length() - suffix.length()));
+                    }
+                  });
+              return tenants;
+            });
+  }
+
+  private Future<Void> processTenants(List<String> tenants) {
+    OutboxConfig config = IdmClientFactory.getOutboxConfig();
+    int concurrency = IdmClientFactory.getIdmClientConfig().getIdmTransmitConcurrency();
+    Future<Void> future = Future.succeededFuture();
+    for (String tenant : tenants) {
+      future =
+          future.compose(
+              v ->
+                  new TransmissionOutbox(
+                          PostgresClient.getInstance(vertx, tenant),
+                          tenant,
+                          IdmClientFactory.getOutboxIdmClient(vertx, tenant),
+                          config,
+                          concurrency)
+                      .process()
+                      .onSuccess(
+                          count -> {
+                            if (count > 0) {
+                              LOG.info("Processed {} outbox entries of tenant {}", count, tenant);
+                            }
+                          })
+                      .otherwise(
+                          t -> {
+                            LOG.error("Processing the outbox of tenant {} failed", tenant, t);
+                            return 0;
+                          })
+                      .mapEmpty());
+    }
+    return future;
+  }
+}
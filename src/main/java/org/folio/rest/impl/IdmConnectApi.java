@@ -2,32 +2,61 @@ package org.folio.rest.impl;
 
 import static io.vertx.core.Future.failedFuture;
 import static io.vertx.core.Future.succeededFuture;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.folio.idmconnect.Constants.JSONB_FIELD_LIBRARYCARD;
+import static org.folio.idmconnect.Constants.JSONB_FIELD_STATUS;
 import static org.folio.idmconnect.Constants.JSONB_FIELD_UNILOGIN;
 import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
 import static org.folio.rest.tools.utils.ValidationHelper.createValidationErrorMessage;
 
 import io.vertx.core.AsyncResult;
-import io.vertx.core.CompositeFuture;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.ws.rs.core.Response;
+import org.folio.cql2pgjson.exception.CQL2PgJSONException;
+import org.folio.idmconnect.CircuitBreaker;
+import org.folio.idmconnect.ContractDeleter;
+import org.folio.idmconnect.ContractExporter;
+import org.folio.idmconnect.ContractImporter;
+import org.folio.idmconnect.ContractPager;
+import org.folio.idmconnect.ContractProjection;
+import org.folio.idmconnect.ContractTransmitter;
+import org.folio.idmconnect.ETags;
 import org.folio.idmconnect.IdmClient;
 import org.folio.idmconnect.IdmClientFactory;
+import org.folio.idmconnect.RetryBudget;
+import org.folio.idmconnect.SearchResultCache;
+import org.folio.idmconnect.TenantLimiter;
+import org.folio.idmconnect.TransmissionOutbox;
+import org.folio.rest.RestVerticle;
+import org.folio.rest.annotations.Stream;
 import org.folio.rest.jaxrs.model.BulkDeleteRequest;
 import org.folio.rest.jaxrs.model.BulkDeleteResponse;
+import org.folio.rest.jaxrs.model.BulkTransmitRequest;
+import org.folio.rest.jaxrs.model.BulkTransmitResponse;
+import org.folio.rest.jaxrs.model.CircuitBreakerState;
 import org.folio.rest.jaxrs.model.Contract;
 import org.folio.rest.jaxrs.model.Contract.Status;
 import org.folio.rest.jaxrs.model.Contracts;
+import org.folio.rest.jaxrs.model.IdmMetrics;
+import org.folio.rest.jaxrs.model.Retries;
+import org.folio.rest.jaxrs.model.SearchCache;
+import org.folio.rest.jaxrs.model.TenantLimits;
 import org.folio.rest.jaxrs.resource.IdmConnect;
 import org.folio.rest.persist.Conn;
 import org.folio.rest.persist.PgExceptionUtil;
@@ -37,8 +66,15 @@ import org.folio.rest.tools.utils.TenantTool;
 
 public class IdmConnectApi implements IdmConnect {
 
+  private static final String CACHE_CONTROL_NO_CACHE = "no-cache";
+
+  /** Bulk imports in progress by the {@link RestVerticle#STREAM_ID} of their request. */
+  private static final Map<String, ContractImporter> IMPORTS = new ConcurrentHashMap<>();
+
   @Override
   public void getIdmConnectContract(
+      String cursor,
+      String fields,
       String query,
       String totalRecords,
       int offset,
@@ -46,11 +82,23 @@ public class IdmConnectApi implements IdmConnect {
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
+    if (fields != null) {
+      getProjectedContracts(
+              fields, cursor, query, totalRecords, offset, limit, okapiHeaders, vertxContext)
+          .onComplete(asyncResultHandler);
+      return;
+    }
+    if (cursor != null) {
+      getContractPage(cursor, query, totalRecords, offset, limit, okapiHeaders, vertxContext)
+          .onComplete(asyncResultHandler);
+      return;
+    }
     PgUtil.get(
         TABLE_NAME_CONTRACTS,
         Contract.class,
         Contracts.class,
         query,
+        totalRecords,
         offset,
         limit,
         okapiHeaders,
@@ -59,6 +107,71 @@ public class IdmConnectApi implements IdmConnect {
         asyncResultHandler);
   }
 
+  private Future<Response> getContractPage(
+      String cursor,
+      String query,
+      String totalRecords,
+      int offset,
+      int limit,
+      Map<String, String> okapiHeaders,
+      Context vertxContext) {
+    if (offset != 0) {
+      return succeededFuture(
+          GetIdmConnectContractResponse.respond400WithTextPlain(
+              "offset cannot be combined with cursor"));
+    }
+    return new ContractPager(
+            PgUtil.postgresClient(vertxContext, okapiHeaders), TenantTool.tenantId(okapiHeaders))
+        .getPage(query, cursor, limit, totalRecords)
+        .<Response>map(GetIdmConnectContractResponse::respond200WithApplicationJson)
+        .otherwise(
+            t -> {
+              if (t instanceof CQL2PgJSONException || t instanceof IllegalArgumentException) {
+                return GetIdmConnectContractResponse.respond400WithTextPlain(t.getMessage());
+              }
+              return GetIdmConnectContractResponse.respond500WithTextPlain(t.getMessage());
+            });
+  }
+
+  private Future<Response> getProjectedContracts(
+      String fields,
+      String cursor,
+      String query,
+      String totalRecords,
+      int offset,
+      int limit,
+      Map<String, String> okapiHeaders,
+      Context vertxContext) {
+    if (cursor != null) {
+      return succeededFuture(
+          GetIdmConnectContractResponse.respond400WithTextPlain(
+              "fields cannot be combined with cursor"));
+    }
+    ContractProjection projection;
+    try {
+      projection =
+          new ContractProjection(
+              PgUtil.postgresClient(vertxContext, okapiHeaders),
+              TenantTool.tenantId(okapiHeaders),
+              fields);
+    } catch (IllegalArgumentException e) {
+      return succeededFuture(GetIdmConnectContractResponse.respond400WithTextPlain(e.getMessage()));
+    }
+    // the JSON text is written as is, without mapping it to Contracts
+    return projection
+        .getPage(query, totalRecords, offset, limit)
+        .map(
+            json ->
+                Response.status(200).header(CONTENT_TYPE, APPLICATION_JSON).entity(json).build())
+        .otherwise(
+            t -> {
+              if (t instanceof CQL2PgJSONException) {
+                return GetIdmConnectContractResponse.respond400WithTextPlain(t.getMessage());
+              }
+              return GetIdmConnectContractResponse.respond500WithTextPlain(t.getMessage());
+            });
+  }
+
   @Override
   public void postIdmConnectContract(
       Contract entity,
@@ -77,17 +190,55 @@ public class IdmConnectApi implements IdmConnect {
   @Override
   public void getIdmConnectContractById(
       String id,
+      String ifNoneMatch,
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
-    PgUtil.getById(
-        TABLE_NAME_CONTRACTS,
-        Contract.class,
-        id,
-        okapiHeaders,
-        vertxContext,
-        GetIdmConnectContractByIdResponse.class,
-        asyncResultHandler);
+    if (ContractTransmitter.toUuid(id) == null) {
+      asyncResultHandler.handle(
+          succeededFuture(GetIdmConnectContractByIdResponse.respond404WithTextPlain("Not found")));
+      return;
+    }
+    PostgresClient pgClient = PgUtil.postgresClient(vertxContext, okapiHeaders);
+    // the version alone is enough to tell that the client's copy is up to date
+    Future<String> unmodifiedETag =
+        ifNoneMatch == null
+            ? succeededFuture()
+            : getETag(pgClient, TenantTool.tenantId(okapiHeaders), id)
+                .map(etag -> etag != null && ETags.matches(ifNoneMatch, etag, true) ? etag : null);
+    unmodifiedETag
+        .compose(
+            etag -> {
+              if (etag != null) {
+                return succeededFuture(Response.status(304).header(ETAG, etag).build());
+              }
+              return pgClient
+                  .getById(TABLE_NAME_CONTRACTS, id, Contract.class)
+                  .map(
+                      contract ->
+                          contract == null
+                              ? GetIdmConnectContractByIdResponse.respond404WithTextPlain(
+                                  "Not found")
+                              : Response.status(200)
+                                  .header(CONTENT_TYPE, APPLICATION_JSON)
+                                  .header(ETAG, ETags.of(contract.getVersion()))
+                                  .entity(contract)
+                                  .build());
+            })
+        .otherwise(t -> GetIdmConnectContractByIdResponse.respond500WithTextPlain(t.getMessage()))
+        .onComplete(asyncResultHandler);
+  }
+
+  private static Future<String> getETag(PostgresClient pgClient, String tenantId, String id) {
+    return pgClient
+        .execute(
+            "SELECT (jsonb->>'_version')::int FROM "
+                + PostgresClient.convertToPsqlStandard(tenantId)
+                + "."
+                + TABLE_NAME_CONTRACTS
+                + " WHERE id = $1",
+            Tuple.of(ContractTransmitter.toUuid(id)))
+        .map(rows -> rows.size() == 0 ? null : ETags.of(rows.iterator().next().getInteger(0)));
   }
 
   @Override
@@ -109,36 +260,30 @@ public class IdmConnectApi implements IdmConnect {
   @Override
   public void getIdmConnectContractTransmitById(
       String id,
+      boolean async,
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
-    PgUtil.postgresClient(vertxContext, okapiHeaders)
-        .withTrans(
-            conn ->
-                conn.getByIdForUpdate(TABLE_NAME_CONTRACTS, id, Contract.class)
-                    .flatMap(
-                        c ->
-                            transmitContract(c)
-                                .transform(
-                                    ar -> {
-                                      if (ar.succeeded()) {
-                                        return updateContractStatus(
-                                                c, ar.result().getStatus() == 200, conn)
-                                            .transform(
-                                                v ->
-                                                    succeededFuture(
-                                                        Response.fromResponse(ar.result())
-                                                            .build()));
-                                      } else {
-                                        return updateContractStatus(c, false, conn)
-                                            .transform(
-                                                v ->
-                                                    succeededFuture(
-                                                        GetIdmConnectContractTransmitByIdResponse
-                                                            .respond500WithTextPlain(
-                                                                ar.cause().getMessage())));
-                                      }
-                                    })))
+    PostgresClient pgClient = PgUtil.postgresClient(vertxContext, okapiHeaders);
+    String tenantId = TenantTool.tenantId(okapiHeaders);
+    IdmClient idmClient = IdmClientFactory.getIdmClient(vertxContext.owner(), tenantId);
+    Future<Response> response;
+    if (async) {
+      response =
+          new TransmissionOutbox(
+                  pgClient,
+                  tenantId,
+                  idmClient,
+                  IdmClientFactory.getOutboxConfig(),
+                  IdmClientFactory.getIdmClientConfig().getIdmTransmitConcurrency())
+              .enqueue(id);
+    } else {
+      response =
+          new ContractTransmitter(
+                  pgClient, tenantId, idmClient, IdmClientFactory.getOutboxConfig().lease())
+              .transmit(id);
+    }
+    response
         .otherwise(
             t -> GetIdmConnectContractTransmitByIdResponse.respond500WithTextPlain(t.getMessage()))
         .onComplete(asyncResultHandler);
@@ -151,43 +296,193 @@ public class IdmConnectApi implements IdmConnect {
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
 
-    PostgresClient pgClient = PgUtil.postgresClient(vertxContext, okapiHeaders);
+    boolean hasUuids = entity.getUuids() != null && !entity.getUuids().isEmpty();
+    if ((entity.getQuery() != null) == hasUuids) {
+      asyncResultHandler.handle(
+          succeededFuture(
+              PostIdmConnectContractBulkDeleteResponse.respond422WithApplicationJson(
+                  createValidationErrorMessage(
+                      "uuids", null, "either uuids or query must be given"))));
+      return;
+    }
 
-    List<Future<String>> results =
-        entity.getUuids().stream()
-            .map(
-                id ->
-                    pgClient
-                        .delete(TABLE_NAME_CONTRACTS, id)
-                        .transform(
-                            ar -> {
-                              if (ar.failed() || ar.result().rowCount() == 0) {
-                                return succeededFuture(id);
-                              } else {
-                                return succeededFuture(null);
-                              }
-                            }))
-            .collect(Collectors.toList());
-
-    CompositeFuture join = Future.join(results);
-    join.onComplete(
-        ar -> {
-          List<String> failedUUIDs =
-              join.<String>list().stream().filter(Objects::nonNull).collect(Collectors.toList());
-          asyncResultHandler.handle(
-              succeededFuture(
-                  PostIdmConnectContractBulkDeleteResponse.respond200WithApplicationJson(
+    ContractDeleter deleter =
+        new ContractDeleter(
+            PgUtil.postgresClient(vertxContext, okapiHeaders),
+            TenantTool.tenantId(okapiHeaders),
+            IdmClientFactory.getBulkConfig());
+    Future<BulkDeleteResponse> result;
+    if (entity.getQuery() != null) {
+      result = deleter.deleteByQuery(entity.getQuery());
+    } else {
+      result =
+          deleter
+              .deleteAll(entity.getUuids())
+              .map(
+                  failedUUIDs ->
                       new BulkDeleteResponse()
                           .withRequested(entity.getUuids().size())
                           .withDeleted(entity.getUuids().size() - failedUUIDs.size())
                           .withFailed(failedUUIDs.size())
-                          .withFailedItems(failedUUIDs))));
-        });
+                          .withFailedItems(failedUUIDs));
+    }
+    result
+        .<Response>map(PostIdmConnectContractBulkDeleteResponse::respond200WithApplicationJson)
+        .otherwise(
+            t -> {
+              if (t instanceof CQL2PgJSONException) {
+                return PostIdmConnectContractBulkDeleteResponse.respond400WithTextPlain(
+                    t.getMessage());
+              }
+              return PostIdmConnectContractBulkDeleteResponse.respond500WithTextPlain(
+                  t.getMessage());
+            })
+        .onComplete(asyncResultHandler);
+  }
+
+  /**
+   * RMB calls this once per chunk of the body with the same {@link RestVerticle#STREAM_ID}, and
+   * reads the next chunk once the handler has been called; it calls it a last time with {@link
+   * RestVerticle#STREAM_COMPLETE} or {@link RestVerticle#STREAM_ABORT}.
+   */
+  @Stream
+  @Override
+  public void postIdmConnectContractBulkImport(
+      InputStream entity,
+      Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
+    String streamId = okapiHeaders.get(RestVerticle.STREAM_ID);
+    if (okapiHeaders.containsKey(RestVerticle.STREAM_ABORT)) {
+      IMPORTS.remove(streamId);
+      asyncResultHandler.handle(
+          succeededFuture(
+              PostIdmConnectContractBulkImportResponse.respond400WithTextPlain("Import aborted")));
+      return;
+    }
+    ContractImporter importer =
+        IMPORTS.computeIfAbsent(
+            streamId,
+            id ->
+                new ContractImporter(
+                    PgUtil.postgresClient(vertxContext, okapiHeaders),
+                    okapiHeaders,
+                    IdmClientFactory.getBulkConfig()));
+    if (!okapiHeaders.containsKey(RestVerticle.STREAM_COMPLETE)) {
+      Future<Void> written;
+      try {
+        written = importer.write(Buffer.buffer(entity.readAllBytes()));
+      } catch (IOException e) {
+        written = Future.failedFuture(e);
+      }
+      written.onComplete(ar -> asyncResultHandler.handle(ar.map((Response) null)));
+      return;
+    }
+    IMPORTS.remove(streamId);
+    importer
+        .end()
+        .<Response>map(PostIdmConnectContractBulkImportResponse::respond200WithApplicationJson)
+        .otherwise(
+            t -> PostIdmConnectContractBulkImportResponse.respond500WithTextPlain(t.getMessage()))
+        .onComplete(asyncResultHandler);
+  }
+
+  @Override
+  public void getIdmConnectExportContract(
+      String query,
+      String format,
+      RoutingContext routingContext,
+      Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
+    ContractExporter.Format exportFormat = ContractExporter.Format.fromName(format);
+    if (exportFormat == null) {
+      asyncResultHandler.handle(
+          succeededFuture(
+              GetIdmConnectExportContractResponse.respond400WithTextPlain(
+                  "Unsupported format: " + format)));
+      return;
+    }
+    // on success the contracts have been written to the response directly
+    new ContractExporter(
+            PgUtil.postgresClient(vertxContext, okapiHeaders),
+            TenantTool.tenantId(okapiHeaders),
+            IdmClientFactory.getBulkConfig())
+        .export(query, exportFormat, routingContext.response())
+        .onFailure(
+            t -> {
+              if (routingContext.response().headWritten()) {
+                return;
+              }
+              asyncResultHandler.handle(
+                  succeededFuture(
+                      t instanceof CQL2PgJSONException
+                          ? GetIdmConnectExportContractResponse.respond400WithTextPlain(
+                              t.getMessage())
+                          : GetIdmConnectExportContractResponse.respond500WithTextPlain(
+                              t.getMessage())));
+            });
+  }
+
+  @Override
+  public void postIdmConnectContractBulkTransmit(
+      BulkTransmitRequest entity,
+      Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
+
+    boolean hasUuids = entity.getUuids() != null && !entity.getUuids().isEmpty();
+    if ((entity.getQuery() != null) == hasUuids) {
+      asyncResultHandler.handle(
+          succeededFuture(
+              PostIdmConnectContractBulkTransmitResponse.respond422WithApplicationJson(
+                  createValidationErrorMessage(
+                      "uuids", null, "either uuids or query must be given"))));
+      return;
+    }
+
+    String tenantId = TenantTool.tenantId(okapiHeaders);
+    ContractTransmitter transmitter =
+        new ContractTransmitter(
+            PgUtil.postgresClient(vertxContext, okapiHeaders),
+            tenantId,
+            IdmClientFactory.getIdmClient(vertxContext.owner(), tenantId),
+            IdmClientFactory.getOutboxConfig().lease());
+    int concurrency = IdmClientFactory.getIdmClientConfig().getIdmTransmitConcurrency();
+
+    Future<List<String>> ids =
+        entity.getQuery() != null
+            ? transmitter.findIds(entity.getQuery())
+            : succeededFuture(entity.getUuids().stream().distinct().toList());
+    ids.compose(
+            uuids ->
+                transmitter
+                    .transmitAll(uuids, concurrency)
+                    .map(
+                        failedIds ->
+                            PostIdmConnectContractBulkTransmitResponse
+                                .respond200WithApplicationJson(
+                                    new BulkTransmitResponse()
+                                        .withRequested(uuids.size())
+                                        .withTransmitted(uuids.size() - failedIds.size())
+                                        .withFailed(failedIds.size())
+                                        .withFailedItems(failedIds))))
+        .otherwise(
+            t -> {
+              if (t instanceof CQL2PgJSONException) {
+                return PostIdmConnectContractBulkTransmitResponse.respond400WithTextPlain(
+                    t.getMessage());
+              }
+              return PostIdmConnectContractBulkTransmitResponse.respond500WithTextPlain(
+                  t.getMessage());
+            })
+        .onComplete(asyncResultHandler);
   }
 
   @Override
   public void putIdmConnectContractById(
       String id,
+      String ifMatch,
       Contract entity,
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
@@ -197,7 +492,7 @@ public class IdmConnectApi implements IdmConnect {
         .withTrans(
             conn ->
                 conn.getByIdForUpdate(TABLE_NAME_CONTRACTS, id, Contract.class)
-                    .flatMap(contract -> updateContract(contract, entity, conn)))
+                    .flatMap(contract -> updateContract(contract, entity, ifMatch, conn)))
         .otherwise(
             t -> {
               if (PgExceptionUtil.isVersionConflict(t)) {
@@ -214,14 +509,69 @@ public class IdmConnectApi implements IdmConnect {
       String firstname,
       String lastname,
       String dateOfBirth,
+      String cacheControl,
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
-    IdmClientFactory.create()
-        .search(firstname, lastname, dateOfBirth)
+    String tenantId = TenantTool.tenantId(okapiHeaders);
+    IdmClient idmClient = IdmClientFactory.getIdmClient(vertxContext.owner(), tenantId);
+    IdmClientFactory.getSearchResultCache()
+        .get(
+            tenantId,
+            firstname,
+            lastname,
+            dateOfBirth,
+            cacheControl != null
+                && cacheControl.toLowerCase(Locale.ROOT).contains(CACHE_CONTROL_NO_CACHE),
+            () -> idmClient.search(firstname, lastname, dateOfBirth))
         .onComplete(asyncResultHandler);
   }
 
+  @Override
+  public void getIdmConnectMetrics(
+      Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
+    SearchResultCache.Stats stats = IdmClientFactory.getSearchResultCache().getStats();
+    List<CircuitBreakerState> circuitBreakers =
+        IdmClientFactory.getCircuitBreakers().entrySet().stream()
+            .map(
+                entry -> {
+                  CircuitBreaker.Stats breaker = entry.getValue().getStats();
+                  return new CircuitBreakerState()
+                      .withOperation(entry.getKey().name())
+                      .withState(breaker.state().name())
+                      .withFailures(breaker.failures())
+                      .withRejected(breaker.rejected());
+                })
+            .toList();
+    RetryBudget.Stats retries = IdmClientFactory.getRetryBudget().getStats();
+    TenantLimiter.Stats limits =
+        IdmClientFactory.getTenantLimiter(TenantTool.tenantId(okapiHeaders)).getStats();
+    asyncResultHandler.handle(
+        succeededFuture(
+            GetIdmConnectMetricsResponse.respond200WithApplicationJson(
+                new IdmMetrics()
+                    .withSearchCache(
+                        new SearchCache()
+                            .withHits(stats.hits())
+                            .withMisses(stats.misses())
+                            .withEvictions(stats.evictions())
+                            .withSize(stats.size()))
+                    .withCircuitBreakers(circuitBreakers)
+                    .withRetries(
+                        new Retries()
+                            .withRetries(retries.retries())
+                            .withRecovered(retries.recovered())
+                            .withExhausted(retries.exhausted())
+                            .withRejected(retries.rejected()))
+                    .withTenantLimits(
+                        new TenantLimits()
+                            .withInFlight(limits.inFlight())
+                            .withBulkheadRejected(limits.bulkheadRejected())
+                            .withRateLimited(limits.rateLimited())))));
+  }
+
   @Override
   public void postIdmConnectUbreadernumber(
       String unilogin,
@@ -229,7 +579,7 @@ public class IdmConnectApi implements IdmConnect {
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
-    IdmClientFactory.create()
+    IdmClientFactory.getIdmClient(vertxContext.owner(), TenantTool.tenantId(okapiHeaders))
         .postUBReaderNumber(unilogin, uBReaderNumber)
         .onSuccess(
             resp -> {
@@ -246,7 +596,7 @@ public class IdmConnectApi implements IdmConnect {
       Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext) {
-    IdmClientFactory.create()
+    IdmClientFactory.getIdmClient(vertxContext.owner(), TenantTool.tenantId(okapiHeaders))
         .deleteUBReaderNumber(unilogin)
         .onSuccess(
             resp -> {
@@ -276,10 +626,29 @@ public class IdmConnectApi implements IdmConnect {
     }
   }
 
-  private Future<Response> updateContract(Contract oldContract, Contract newContract, Conn conn) {
+  private Future<Response> updateContract(
+      Contract oldContract, Contract newContract, String ifMatch, Conn conn) {
     if (oldContract == null) {
       return succeededFuture(PutIdmConnectContractByIdResponse.respond404WithTextPlain(null));
     }
+    if (ifMatch != null && !ETags.matches(ifMatch, ETags.of(oldContract.getVersion()), false)) {
+      return succeededFuture(
+          PutIdmConnectContractByIdResponse.respond412WithTextPlain("Contract has been changed"));
+    }
+    // the transmission sets the status when the IDM has answered
+    if (oldContract.getStatus() == Status.TRANSMISSION_IN_PROGRESS) {
+      return succeededFuture(
+          PutIdmConnectContractByIdResponse.respond409WithTextPlain(
+              ContractTransmitter.MSG_IN_PROGRESS));
+    }
+    if (newContract.getStatus() == Status.TRANSMISSION_IN_PROGRESS) {
+      return succeededFuture(
+          PutIdmConnectContractByIdResponse.respond422WithApplicationJson(
+              createValidationErrorMessage(
+                  JSONB_FIELD_STATUS,
+                  newContract.getStatus().value(),
+                  "value can only be set by a transmission")));
+    }
     if (Objects.equals(oldContract.getLibraryCard(), newContract.getLibraryCard())) {
       return conn.update(TABLE_NAME_CONTRACTS, newContract, oldContract.getId())
           .flatMap(
@@ -295,46 +664,6 @@ public class IdmConnectApi implements IdmConnect {
     }
   }
 
-  private Future<Response> transmitContract(Contract contract) {
-    if (contract.getStatus() == null) {
-      contract.setStatus(Status.DRAFT);
-    }
-    IdmClient idmClient = IdmClientFactory.create();
-    if (Stream.of(Status.DRAFT, Status.TRANSMISSION_ERROR)
-        .anyMatch(status -> contract.getStatus().equals(status))) {
-      return idmClient.postContract(contract);
-    } else {
-      return idmClient.putContract(contract);
-    }
-  }
-
-  private Future<Void> updateContractStatus(Contract contract, boolean succeeded, Conn conn) {
-    if (contract.getStatus() == null) {
-      contract.setStatus(Status.DRAFT);
-    }
-    if (succeeded) {
-      if (Stream.of(Status.DRAFT, Status.TRANSMISSION_ERROR)
-          .anyMatch(status -> contract.getStatus().equals(status))) {
-        contract.setStatus(Status.PENDING);
-      } else {
-        contract.setStatus(Status.PENDING_EDIT);
-      }
-    } else {
-      if (Stream.of(Status.DRAFT, Status.TRANSMISSION_ERROR)
-          .anyMatch(status -> contract.getStatus().equals(status))) {
-        contract.setStatus(Status.TRANSMISSION_ERROR);
-      } else {
-        contract.setStatus(Status.TRANSMISSION_ERROR_EDIT);
-      }
-    }
-    return conn.update(TABLE_NAME_CONTRACTS, contract, contract.getId())
-        .flatMap(
-            rs ->
-                (rs.rowCount() == 1
-                    ? succeededFuture()
-                    : failedFuture("Updating status of " + contract.getId() + " failed")));
-  }
-
   private Future<RowSet<Row>> updateContractLibraryCard(
       Map<String, String> okapiHeaders, Context vertxContext, String unilogin, String libraryCard) {
     PostgresClient pgClient = PgUtil.postgresClient(vertxContext, okapiHeaders);
@@ -349,24 +678,33 @@ public class IdmConnectApi implements IdmConnect {
 
     if (libraryCard != null) {
       return pgClient.execute(
-          "UPDATE "
-              + table
-              + " SET jsonb = jsonb_set(jsonb, '{"
-              + JSONB_FIELD_LIBRARYCARD
-              + "}', $1) WHERE (jsonb->'"
-              + JSONB_FIELD_UNILOGIN
-              + "') = $2",
-          Tuple.of(libraryCard, unilogin));
+          createUpdateLibraryCardSql(table, true), Tuple.of(unilogin, libraryCard));
     } else {
-      return pgClient.execute(
-          "UPDATE "
-              + table
-              + " SET jsonb = jsonb - '"
-              + JSONB_FIELD_LIBRARYCARD
-              + "' WHERE (jsonb->'"
-              + JSONB_FIELD_UNILOGIN
-              + "') = $1",
-          Tuple.of(unilogin));
+      return pgClient.execute(createUpdateLibraryCardSql(table, false), Tuple.of(unilogin));
     }
   }
+
+  /**
+   * Returns the statement that sets ({@code $2}) or removes the library card of all contracts with
+   * uniLogin {@code $1}.
+   *
+   * <p>The predicate matches the expression of the {@code uniLogin} index of {@code schema.json};
+   * RMB limits indexed values to 600 characters, so the full value is compared as well.
+   */
+  static String createUpdateLibraryCardSql(String table, boolean set) {
+    String update =
+        set
+            ? "jsonb_set(jsonb, '{" + JSONB_FIELD_LIBRARYCARD + "}', to_jsonb($2::text))"
+            : "jsonb - '" + JSONB_FIELD_LIBRARYCARD + "'";
+    String uniLogin = "jsonb->>'" + JSONB_FIELD_UNILOGIN + "'";
+    return "UPDATE "
+        + table
+        + " SET jsonb = "
+        + update
+        + " WHERE left("
+        + uniLogin
+        + ", 600) = left($1, 600) AND "
+        + uniLogin
+        + " = $1";
+  }
 }
@@ -0,0 +1,26 @@
+package org.folio.rest.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.folio.idmconnect.IdmClientFactory;
+import org.folio.idmconnect.TransmissionOutboxVerticle;
+import org.folio.rest.resource.interfaces.InitAPI;
+
+public class IdmConnectInitApi implements InitAPI {
+
+  @Override
+  public void init(Vertx vertx, Context context, Handler<AsyncResult<Boolean>> handler) {
+    try {
+      IdmClientFactory.init(vertx);
+      vertx
+          .deployVerticle(new TransmissionOutboxVerticle())
+          .<Boolean>map(id -> true)
+          .onComplete(handler);
+    } catch (Exception e) {
+      handler.handle(Future.failedFuture(e));
+    }
+  }
+}
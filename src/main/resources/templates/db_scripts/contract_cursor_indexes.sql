@@ -0,0 +1,19 @@
+-- Indexes for cursor pagination sorted by a field, see ContractPager: the key is the expression of
+-- the btree index of the field in schema.json, compared as (key IS NULL, coalesce(key, ''), id)
+CREATE INDEX IF NOT EXISTS contract_unilogin_cursor_idx
+  ON ${myuniversity}_${mymodule}.contract (
+    (left(jsonb->>'uniLogin',600) IS NULL),
+    (coalesce(left(jsonb->>'uniLogin',600), '')),
+    id);
+
+CREATE INDEX IF NOT EXISTS contract_begindate_cursor_idx
+  ON ${myuniversity}_${mymodule}.contract (
+    (${myuniversity}_${mymodule}.normalize_iso_date(jsonb->>'beginDate') IS NULL),
+    (coalesce(${myuniversity}_${mymodule}.normalize_iso_date(jsonb->>'beginDate'), '')),
+    id);
+
+CREATE INDEX IF NOT EXISTS contract_enddate_cursor_idx
+  ON ${myuniversity}_${mymodule}.contract (
+    (${myuniversity}_${mymodule}.normalize_iso_date(jsonb->>'endDate') IS NULL),
+    (coalesce(${myuniversity}_${mymodule}.normalize_iso_date(jsonb->>'endDate'), '')),
+    id);
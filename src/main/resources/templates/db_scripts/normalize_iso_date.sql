@@ -0,0 +1,16 @@
+-- Immutable normalization of a date string for the beginDate and endDate indexes, because a text to
+-- date cast depends on the DateStyle setting. A valid YYYY-MM-DD date, optionally followed by a
+-- time, becomes its YYYY-MM-DD part; anything else is returned unchanged. The result is text, so
+-- that every CQL relation, including wildcard and empty-string searches, keeps working on these
+-- fields, while normalized dates compare in date order.
+CREATE OR REPLACE FUNCTION ${myuniversity}_${mymodule}.normalize_iso_date(value text) RETURNS text AS $$
+BEGIN
+  IF value !~ '^\d{4}-\d{2}-\d{2}' THEN
+    RETURN value;
+  END IF;
+  PERFORM make_date(substr(value, 1, 4)::int, substr(value, 6, 2)::int, substr(value, 9, 2)::int);
+  RETURN substr(value, 1, 10);
+EXCEPTION WHEN OTHERS THEN
+  RETURN value;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE STRICT PARALLEL SAFE;
@@ -0,0 +1,17 @@
+-- Contracts waiting for an asynchronous transmission to the IDM, drained by the outbox worker
+CREATE TABLE IF NOT EXISTS ${myuniversity}_${mymodule}.transmission_outbox (
+  contract_id uuid PRIMARY KEY
+    REFERENCES ${myuniversity}_${mymodule}.contract (id) ON DELETE CASCADE,
+  previous_status text NOT NULL,
+  attempts integer NOT NULL DEFAULT 0,
+  next_attempt_at timestamptz NOT NULL DEFAULT now(),
+  locked_until timestamptz,
+  -- token of the claim holding the lease, a worker may only finish its own claim
+  lease_id uuid,
+  last_error text
+);
+
+ALTER TABLE ${myuniversity}_${mymodule}.transmission_outbox ADD COLUMN IF NOT EXISTS lease_id uuid;
+
+CREATE INDEX IF NOT EXISTS transmission_outbox_next_attempt_at_idx
+  ON ${myuniversity}_${mymodule}.transmission_outbox (next_attempt_at);
@@ -0,0 +1,30 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Backoff Unit Tests")
+class BackoffTest {
+
+  @RepeatedTest(20)
+  void testDelayGrowsExponentiallyWithJitter() {
+    assertThat(Backoff.delay(1, 1000, 60000)).isBetween(500L, 1000L);
+    assertThat(Backoff.delay(2, 1000, 60000)).isBetween(1000L, 2000L);
+    assertThat(Backoff.delay(4, 1000, 60000)).isBetween(4000L, 8000L);
+  }
+
+  @RepeatedTest(20)
+  void testDelayIsCapped() {
+    assertThat(Backoff.delay(10, 1000, 60000)).isBetween(30000L, 60000L);
+    assertThat(Backoff.delay(Integer.MAX_VALUE, 1000, 60000)).isBetween(30000L, 60000L);
+  }
+
+  @Test
+  void testZeroDelay() {
+    assertThat(Backoff.delay(0, 0, 60000)).isZero();
+    assertThat(Backoff.delay(3, 1000, 0)).isZero();
+  }
+}
@@ -0,0 +1,25 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class BulkConfigTest {
+
+  @Test
+  public void testCreateFromEnvVarsDefaults() {
+    assertThat(BulkConfig.createFromEnvVars())
+        .isEqualTo(new BulkConfig(BulkConfig.DEFAULT_CHUNK_SIZE, BulkConfig.DEFAULT_CONCURRENCY));
+  }
+
+  @Test
+  public void testInvalidValuesAreRejected() {
+    assertThatThrownBy(() -> new BulkConfig(0, 1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(BulkConfig.ENVVAR_BULK_CHUNK_SIZE);
+    assertThatThrownBy(() -> new BulkConfig(1, 0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(BulkConfig.ENVVAR_BULK_CONCURRENCY);
+  }
+}
@@ -0,0 +1,176 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+import org.folio.idmconnect.CircuitBreaker.State;
+import org.folio.idmconnect.CircuitBreaker.Stats;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("CircuitBreaker Unit Tests")
+class CircuitBreakerTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final AtomicInteger callCount = new AtomicInteger();
+
+  private CircuitBreaker circuitBreaker(int failureThreshold, int slowCallDuration) {
+    return new CircuitBreaker(
+        IdmOperation.SEARCH,
+        new CircuitBreakerConfig(failureThreshold, 1000, slowCallDuration),
+        nanoTime::get);
+  }
+
+  private Supplier<Future<Response>> call(int status) {
+    return () -> {
+      callCount.incrementAndGet();
+      return Future.succeededFuture(Response.status(status).build());
+    };
+  }
+
+  private void advance(long millis) {
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private int status(CircuitBreaker breaker, int status) {
+    return breaker.execute(call(status)).result().getStatus();
+  }
+
+  @Test
+  void testCircuitOpensAfterConsecutiveFailures() {
+    CircuitBreaker breaker = circuitBreaker(3, 0);
+    status(breaker, 500);
+    status(breaker, 502);
+    status(breaker, 200);
+    status(breaker, 500);
+    status(breaker, 500);
+    assertThat(breaker.getStats()).isEqualTo(new Stats(State.CLOSED, 2, 0));
+
+    assertThat(status(breaker, 504)).isEqualTo(504);
+    Response rejected = breaker.execute(call(200)).result();
+
+    assertThat(rejected.getStatus()).isEqualTo(503);
+    assertThat(rejected.getHeaderString(RETRY_AFTER)).isEqualTo("1");
+    assertThat(rejected.getEntity().toString()).contains("SEARCH");
+    assertThat(callCount).hasValue(6);
+    assertThat(breaker.getStats()).isEqualTo(new Stats(State.OPEN, 3, 1));
+  }
+
+  @Test
+  void testClientErrorsAreNoFailures() {
+    CircuitBreaker breaker = circuitBreaker(1, 0);
+    status(breaker, 400);
+    status(breaker, 404);
+
+    assertThat(breaker.getStats()).isEqualTo(new Stats(State.CLOSED, 0, 0));
+  }
+
+  @Test
+  void testFailedFuturesAreFailures() {
+    CircuitBreaker breaker = circuitBreaker(1, 0);
+    breaker.execute(() -> Future.failedFuture("connection reset"));
+
+    assertThat(breaker.getStats().state()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  void testSuccessfulTrialCallClosesCircuit() {
+    CircuitBreaker breaker = circuitBreaker(1, 0);
+    status(breaker, 500);
+    advance(999);
+    assertThat(status(breaker, 200)).isEqualTo(503);
+
+    advance(1);
+    assertThat(breaker.getStats().state()).isEqualTo(State.HALF_OPEN);
+    assertThat(status(breaker, 200)).isEqualTo(200);
+
+    assertThat(breaker.getStats()).isEqualTo(new Stats(State.CLOSED, 0, 1));
+  }
+
+  @Test
+  void testFailedTrialCallOpensCircuitAgain() {
+    CircuitBreaker breaker = circuitBreaker(2, 0);
+    status(breaker, 500);
+    status(breaker, 500);
+    advance(1000);
+
+    assertThat(status(breaker, 500)).isEqualTo(500);
+    assertThat(status(breaker, 200)).isEqualTo(503);
+    assertThat(breaker.getStats().state()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  void testOnlyOneTrialCallIsLetThrough() {
+    CircuitBreaker breaker = circuitBreaker(1, 0);
+    status(breaker, 500);
+    advance(1000);
+    Promise<Response> trial = Promise.promise();
+    breaker.execute(trial::future);
+
+    assertThat(status(breaker, 200)).isEqualTo(503);
+
+    trial.complete(Response.ok().build());
+    assertThat(status(breaker, 200)).isEqualTo(200);
+  }
+
+  @Test
+  void testResultsOfCallsAdmittedInAnEarlierStateAreIgnored() {
+    CircuitBreaker breaker = circuitBreaker(1, 0);
+    Promise<Response> lateSuccess = Promise.promise();
+    Promise<Response> lateFailure = Promise.promise();
+    breaker.execute(lateSuccess::future);
+    breaker.execute(lateFailure::future);
+    status(breaker, 500);
+    advance(1000);
+    Promise<Response> trial = Promise.promise();
+    breaker.execute(trial::future);
+
+    lateSuccess.complete(Response.ok().build());
+    assertThat(breaker.getStats().state()).isEqualTo(State.HALF_OPEN);
+    assertThat(status(breaker, 200)).isEqualTo(503);
+
+    trial.complete(Response.ok().build());
+    lateFailure.complete(Response.serverError().build());
+    assertThat(breaker.getStats()).isEqualTo(new Stats(State.CLOSED, 0, 1));
+  }
+
+  @Test
+  void testSlowCallsAreFailures() {
+    CircuitBreaker breaker = circuitBreaker(1, 100);
+    Promise<Response> slow = Promise.promise();
+    breaker.execute(slow::future);
+    advance(101);
+    slow.complete(Response.ok().build());
+
+    assertThat(breaker.getStats().state()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  void testDisabledCircuitBreakerNeverOpens() {
+    CircuitBreaker breaker = circuitBreaker(0, 0);
+    for (int i = 0; i < 10; i++) {
+      assertThat(status(breaker, 500)).isEqualTo(500);
+    }
+    assertThat(breaker.getStats()).isEqualTo(new Stats(State.CLOSED, 0, 0));
+  }
+
+  @Test
+  void testInvalidConfigIsRejected() {
+    assertThatThrownBy(() -> new CircuitBreakerConfig(-1, 1000, 0))
+        .hasMessageContaining(CircuitBreakerConfig.ENVVAR_IDM_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+    assertThatThrownBy(() -> new CircuitBreakerConfig(5, 0, 0))
+        .hasMessageContaining(CircuitBreakerConfig.ENVVAR_IDM_CIRCUIT_BREAKER_RESET_TIMEOUT);
+    assertThatThrownBy(() -> new CircuitBreakerConfig(5, 1000, -1))
+        .hasMessageContaining(CircuitBreakerConfig.ENVVAR_IDM_CIRCUIT_BREAKER_SLOW_CALL_DURATION);
+    assertThat(CircuitBreakerConfig.createFromEnvVars(IdmOperation.SEARCH))
+        .isEqualTo(CircuitBreakerConfig.DEFAULT);
+  }
+}
@@ -0,0 +1,156 @@
+package org.folio.idmconnect;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.junit5.VertxExtension;
+import java.util.Map;
+import javax.ws.rs.core.Response;
+import org.folio.idmconnect.CircuitBreaker.State;
+import org.folio.rest.jaxrs.model.Contract;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("CircuitBreakingIdmClient Integration Tests")
+class CircuitBreakingIdmClientIT {
+
+  private static final String SEARCH_PATH = "/search";
+  private static final String CONTRACT_PATH = "/contracts";
+  private static final int FAILURE_THRESHOLD = 3;
+  private static final int RESET_TIMEOUT = 500;
+  private static final int SLOW_CALL_DURATION = 200;
+
+  @RegisterExtension
+  static WireMockExtension idmServer =
+      WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+  private HttpClient httpClient;
+  private Map<IdmOperation, CircuitBreaker> circuitBreakers;
+  private IdmClient idmClient;
+
+  @BeforeEach
+  void setup(Vertx vertx) {
+    httpClient = vertx.createHttpClient();
+    CircuitBreakerConfig breakerConfig =
+        new CircuitBreakerConfig(FAILURE_THRESHOLD, RESET_TIMEOUT, SLOW_CALL_DURATION);
+    IdmClientConfig config =
+        new IdmClientConfig.Builder()
+            .idmUrl(idmServer.baseUrl() + SEARCH_PATH)
+            .idmContractUrl(idmServer.baseUrl() + CONTRACT_PATH)
+            .idmCircuitBreaker(IdmOperation.SEARCH, breakerConfig)
+            .idmCircuitBreaker(IdmOperation.PUT_CONTRACT, breakerConfig)
+            .build();
+    circuitBreakers =
+        Map.of(
+            IdmOperation.SEARCH,
+            new CircuitBreaker(IdmOperation.SEARCH, breakerConfig),
+            IdmOperation.PUT_CONTRACT,
+            new CircuitBreaker(IdmOperation.PUT_CONTRACT, breakerConfig));
+    idmClient =
+        new CircuitBreakingIdmClient(
+            new IdmClientImpl(config, httpClient), config, circuitBreakers);
+  }
+
+  @AfterEach
+  void tearDown() {
+    httpClient.close();
+  }
+
+  private static Response await(Future<Response> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get();
+  }
+
+  private Response search() throws Exception {
+    return await(idmClient.search("John", "Doe", "1998-12-24"));
+  }
+
+  private void stubSearch(int status) {
+    idmServer.stubFor(get(urlPathEqualTo(SEARCH_PATH)).willReturn(aResponse().withStatus(status)));
+  }
+
+  private State state(IdmOperation operation) {
+    return circuitBreakers.get(operation).getStats().state();
+  }
+
+  @Test
+  @DisplayName("Should fail fast with 503 after repeated connection faults")
+  void connectionFaultsOpenCircuit() throws Exception {
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      assertThat(search().getStatus()).isEqualTo(500);
+    }
+    Response response = search();
+
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(response.getEntity().toString()).contains("circuit breaker");
+    idmServer.verify(FAILURE_THRESHOLD, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+    assertThat(state(IdmOperation.SEARCH)).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  @DisplayName("Should open the circuit for slow responses")
+  void slowResponsesOpenCircuit() throws Exception {
+    idmServer.stubFor(
+        put(urlPathEqualTo(CONTRACT_PATH))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(2 * SLOW_CALL_DURATION)));
+
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      assertThat(await(idmClient.putContract(new Contract())).getStatus()).isEqualTo(200);
+    }
+
+    assertThat(await(idmClient.putContract(new Contract())).getStatus()).isEqualTo(503);
+    idmServer.verify(FAILURE_THRESHOLD, putRequestedFor(urlPathEqualTo(CONTRACT_PATH)));
+    assertThat(state(IdmOperation.SEARCH)).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  @DisplayName("Should close the circuit when the IDM recovered")
+  void circuitClosesAfterRecovery() throws Exception {
+    stubSearch(502);
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      search();
+    }
+    assertThat(search().getStatus()).isEqualTo(503);
+
+    stubSearch(200);
+    Thread.sleep(RESET_TIMEOUT);
+
+    assertThat(state(IdmOperation.SEARCH)).isEqualTo(State.HALF_OPEN);
+    assertThat(search().getStatus()).isEqualTo(200);
+    assertThat(state(IdmOperation.SEARCH)).isEqualTo(State.CLOSED);
+    idmServer.verify(FAILURE_THRESHOLD + 1, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+  }
+
+  @Test
+  @DisplayName("Should not open the circuit if the URL is not set")
+  void missingUrlBypassesCircuit() throws Exception {
+    IdmClientConfig config = new IdmClientConfig.Builder().build();
+    IdmClient client =
+        new CircuitBreakingIdmClient(
+            new IdmClientImpl(config, httpClient), config, circuitBreakers);
+
+    for (int i = 0; i <= FAILURE_THRESHOLD; i++) {
+      assertThat(await(client.search("John", "Doe", "1998-12-24")).getStatus()).isEqualTo(500);
+    }
+    assertThat(state(IdmOperation.SEARCH)).isEqualTo(State.CLOSED);
+  }
+}
@@ -0,0 +1,163 @@
+package org.folio.idmconnect;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import javax.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("CoalescingIdmClient Integration Tests")
+class CoalescingIdmClientIT {
+
+  private static final String SEARCH_PATH = "/search";
+  private static final int CONCURRENT_SEARCHES = 20;
+
+  @RegisterExtension
+  static WireMockExtension idmServer =
+      WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+  private HttpClient httpClient;
+  private IdmClient idmClient;
+
+  @BeforeEach
+  void setup(Vertx vertx) {
+    httpClient = vertx.createHttpClient();
+    idmClient =
+        new CoalescingIdmClient(
+            new IdmClientImpl(
+                new IdmClientConfig.Builder().idmUrl(idmServer.baseUrl() + SEARCH_PATH).build(),
+                httpClient));
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json")
+                    .withBody("[]")
+                    .withFixedDelay(500)));
+  }
+
+  @AfterEach
+  void tearDown() {
+    httpClient.close();
+  }
+
+  private List<Future<Response>> search(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> idmClient.search("John", "Doe", "1998-12-24"))
+        .toList();
+  }
+
+  @Test
+  @DisplayName("Should send one request for concurrent identical searches")
+  void concurrentIdenticalSearchesAreCoalesced(VertxTestContext testContext) {
+    List<Future<Response>> searches = search(CONCURRENT_SEARCHES);
+
+    Future.all(searches)
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          idmServer.verify(1, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+                          List<Response> responses = searches.stream().map(Future::result).toList();
+                          assertThat(responses)
+                              .allSatisfy(
+                                  response -> {
+                                    assertThat(response.getStatus()).isEqualTo(200);
+                                    assertThat(response.getEntity()).isEqualTo("[]".getBytes());
+                                  })
+                              .doesNotHaveDuplicates();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Should send one request per distinct search")
+  void distinctSearchesAreNotCoalesced(VertxTestContext testContext) {
+    Future.all(
+            idmClient.search("John", "Doe", "1998-12-24"),
+            idmClient.search("Jane", "Doe", "1998-12-24"),
+            idmClient.search("John", "Doe", "1998-12-24"))
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          idmServer.verify(2, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Should send a new request once the previous search completed")
+  void completedSearchIsNotReused(VertxTestContext testContext) {
+    idmClient
+        .search("John", "Doe", "1998-12-24")
+        .compose(response -> idmClient.search("John", "Doe", "1998-12-24"))
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          idmServer.verify(2, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Should retry and count a failed shared search once")
+  void sharedSearchIsRetriedAndCountedOnce(Vertx vertx, VertxTestContext testContext) {
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .willReturn(aResponse().withStatus(503).withFixedDelay(200)));
+    CircuitBreakerConfig breakerConfig = new CircuitBreakerConfig(5, 30000, 0);
+    IdmClientConfig config =
+        new IdmClientConfig.Builder()
+            .idmUrl(idmServer.baseUrl() + SEARCH_PATH)
+            .idmCircuitBreaker(IdmOperation.SEARCH, breakerConfig)
+            .idmRetry(IdmOperation.SEARCH, new RetryConfig(2, 0, 0))
+            .build();
+    CircuitBreaker circuitBreaker = new CircuitBreaker(IdmOperation.SEARCH, breakerConfig);
+    idmClient =
+        new CoalescingIdmClient(
+            new RetryingIdmClient(
+                vertx,
+                new CircuitBreakingIdmClient(
+                    new IdmClientImpl(config, httpClient),
+                    config,
+                    Map.of(IdmOperation.SEARCH, circuitBreaker)),
+                config,
+                new RetryBudget(20)));
+
+    Future.all(search(CONCURRENT_SEARCHES))
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          idmServer.verify(2, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+                          assertThat(circuitBreaker.getStats().failures()).isEqualTo(2);
+                          testContext.completeNow();
+                        })));
+  }
+}
@@ -0,0 +1,93 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.io.Resources;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.folio.idmconnect.ContractPager.Cursor;
+import org.folio.idmconnect.ContractPager.Sort;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ContractPager Unit Tests")
+class ContractPagerTest {
+
+  private static final Sort SORT = new Sort("uniLogin", true);
+
+  @Test
+  void testCursorRoundTrip() {
+    Cursor cursor = new Cursor(SORT, "Müller, \"Hans\"", UUID.randomUUID());
+    assertThat(cursor.encode()).matches("[\\w-]+");
+    assertThat(Cursor.decode(cursor.encode(), SORT)).isEqualTo(cursor);
+  }
+
+  @Test
+  void testCursorOfContractWithoutSortFieldRoundTrip() {
+    Cursor cursor = new Cursor(SORT, null, UUID.randomUUID());
+    assertThat(Cursor.decode(cursor.encode(), SORT)).isEqualTo(cursor);
+  }
+
+  @Test
+  void testCursorOfOtherSortOrderIsRejected() {
+    String cursor = new Cursor(SORT, "Müller", UUID.randomUUID()).encode();
+    assertThatThrownBy(() -> Cursor.decode(cursor, new Sort("uniLogin", false)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("sort order");
+    assertThatThrownBy(() -> Cursor.decode(cursor, new Sort("id", true)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("sort order");
+  }
+
+  @Test
+  void testInvalidCursorIsRejected() {
+    for (String cursor : new String[] {"", "garbage", "e30", "eyJpZCI6MX0", "!"}) {
+      assertThatThrownBy(() -> Cursor.decode(cursor, SORT))
+          .as(cursor)
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void testKeyExpression() {
+    assertThat(SORT.byId()).isFalse();
+    assertThat(SORT.keyExpression()).isEqualTo("left(jsonb->>'uniLogin',600)");
+    assertThat(new Sort("id", false).byId()).isTrue();
+  }
+
+  @Test
+  void testFieldWithoutBtreeIndexIsRejected() {
+    assertThat(Sort.of("cql.allRecords=1 sortBy endDate/sort.descending"))
+        .isEqualTo(new Sort("endDate", true));
+    assertThatThrownBy(() -> Sort.of("cql.allRecords=1 sortBy personal.lastName"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("personal.lastName");
+  }
+
+  @Test
+  void testSortKeysAreBtreeIndexExpressions() throws Exception {
+    JsonObject table =
+        new JsonObject(
+                Resources.toString(
+                    Resources.getResource("templates/db_scripts/schema.json"),
+                    StandardCharsets.UTF_8))
+            .getJsonArray("tables")
+            .getJsonObject(0);
+    Map<String, String> indexExpressions = new HashMap<>();
+    table
+        .getJsonArray("index")
+        .forEach(
+            o -> {
+              JsonObject index = (JsonObject) o;
+              String field = index.getString("fieldName");
+              indexExpressions.put(
+                  field, index.getString("sqlExpression", "left(jsonb->>'" + field + "',600)"));
+            });
+
+    assertThat(indexExpressions).containsAllEntriesOf(ContractPager.SORT_KEYS);
+  }
+}
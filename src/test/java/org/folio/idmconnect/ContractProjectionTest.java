@@ -0,0 +1,50 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ContractProjection Unit Tests")
+class ContractProjectionTest {
+
+  @Test
+  void testSelectExpressionNestsFields() {
+    assertThat(ContractProjection.selectExpression("personal.lastName, personal.firstName,status"))
+        .isEqualTo(
+            "jsonb_strip_nulls(jsonb_build_object('id', jsonb->'id', 'personal',"
+                + " CASE WHEN jsonb ? 'personal' THEN jsonb_build_object('lastName',"
+                + " jsonb->'personal'->'lastName', 'firstName', jsonb->'personal'->'firstName')"
+                + " END, 'status', jsonb->'status'))");
+  }
+
+  @Test
+  void testSelectExpressionChecksEveryParent() {
+    assertThat(ContractProjection.selectExpression("personal.address.city"))
+        .isEqualTo(
+            "jsonb_strip_nulls(jsonb_build_object('id', jsonb->'id', 'personal',"
+                + " CASE WHEN jsonb ? 'personal' THEN jsonb_build_object('address',"
+                + " CASE WHEN jsonb->'personal' ? 'address' THEN jsonb_build_object('city',"
+                + " jsonb->'personal'->'address'->'city') END) END))");
+  }
+
+  @Test
+  void testSelectExpressionPrefersWholeObject() {
+    String expected =
+        "jsonb_strip_nulls(jsonb_build_object('id', jsonb->'id', 'personal', jsonb->'personal'))";
+    assertThat(ContractProjection.selectExpression("personal.address.city,personal,id"))
+        .isEqualTo(expected);
+    assertThat(ContractProjection.selectExpression("personal,personal.address.city"))
+        .isEqualTo(expected);
+  }
+
+  @Test
+  void testInvalidFieldsAreRejected() {
+    for (String fields : new String[] {"", "status,", "personal..email", "status'", "a b"}) {
+      assertThatThrownBy(() -> ContractProjection.selectExpression(fields))
+          .as(fields)
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.folio.rest.jaxrs.model.Contract.Status;
+import org.folio.utils.TestEntities;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+@DisplayName("ContractTransmitter Unit Tests")
+class ContractTransmitterTest {
+
+  @ParameterizedTest
+  @EnumSource(TestEntities.class)
+  @DisplayName("Should return the status after a successful transmission")
+  void testNextStatusOnSuccess(TestEntities entity) {
+    assertThat(ContractTransmitter.nextStatus(entity.getInitialStatus(), true))
+        .isEqualTo(entity.getSucceededStatus());
+  }
+
+  @ParameterizedTest
+  @EnumSource(TestEntities.class)
+  @DisplayName("Should return the status after a failed transmission")
+  void testNextStatusOnFailure(TestEntities entity) {
+    assertThat(ContractTransmitter.nextStatus(entity.getInitialStatus(), false))
+        .isEqualTo(entity.getFailedStatus());
+  }
+
+  @Test
+  @DisplayName("Should treat a contract without status as draft")
+  void testNextStatusWithoutStatus() {
+    assertThat(ContractTransmitter.nextStatus(null, true)).isEqualTo(Status.PENDING);
+    assertThat(ContractTransmitter.nextStatus(null, false)).isEqualTo(Status.TRANSMISSION_ERROR);
+  }
+}
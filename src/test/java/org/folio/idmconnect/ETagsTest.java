@@ -0,0 +1,31 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ETags Unit Tests")
+class ETagsTest {
+
+  @Test
+  void testOf() {
+    assertThat(ETags.of(3)).isEqualTo("\"3\"");
+    assertThat(ETags.of(null)).isEqualTo("\"0\"");
+  }
+
+  @Test
+  void testMatches() {
+    assertThat(ETags.matches("\"3\"", "\"3\"", false)).isTrue();
+    assertThat(ETags.matches("\"1\", \"3\"", "\"3\"", false)).isTrue();
+    assertThat(ETags.matches("*", "\"3\"", false)).isTrue();
+    assertThat(ETags.matches("\"2\"", "\"3\"", false)).isFalse();
+    assertThat(ETags.matches("3", "\"3\"", true)).isFalse();
+  }
+
+  @Test
+  void testWeakTagsOnlyMatchWeakly() {
+    assertThat(ETags.matches("W/\"3\"", "\"3\"", true)).isTrue();
+    assertThat(ETags.matches("W/\"3\"", "\"3\"", false)).isFalse();
+  }
+}
@@ -0,0 +1,82 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("FutureUtils Unit Tests")
+class FutureUtilsTest {
+
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  private Future<String> delayed(Vertx vertx, int item) {
+    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+    Promise<String> promise = Promise.promise();
+    vertx.setTimer(
+        1 + (item * 7L) % 10,
+        id -> {
+          running.decrementAndGet();
+          promise.complete("item" + item);
+        });
+    return promise.future();
+  }
+
+  @Test
+  void testResultsInOrderWithBoundedConcurrency(Vertx vertx, VertxTestContext testContext) {
+    List<Integer> items = IntStream.range(0, 50).boxed().toList();
+    FutureUtils.mapWithConcurrency(items, 4, item -> delayed(vertx, item))
+        .onComplete(
+            testContext.succeeding(
+                results ->
+                    testContext.verify(
+                        () -> {
+                          assertThat(results)
+                              .containsExactlyElementsOf(
+                                  items.stream().map(item -> "item" + item).toList());
+                          assertThat(maxRunning).hasValue(4);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  void testEmptyItems(VertxTestContext testContext) {
+    FutureUtils.mapWithConcurrency(
+            List.<Integer>of(), 4, item -> Future.succeededFuture("item" + item))
+        .onComplete(
+            testContext.succeeding(
+                results ->
+                    testContext.verify(
+                        () -> {
+                          assertThat(results).isEmpty();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  void testFailure(VertxTestContext testContext) {
+    FutureUtils.mapWithConcurrency(
+            List.of(1, 2, 3),
+            2,
+            item -> item == 2 ? Future.failedFuture("failed") : Future.succeededFuture(item))
+        .onComplete(
+            testContext.failing(
+                t ->
+                    testContext.verify(
+                        () -> {
+                          assertThat(t).hasMessage("failed");
+                          testContext.completeNow();
+                        })));
+  }
+}
@@ -2,6 +2,9 @@ package org.folio.idmconnect;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.PoolOptions;
 import org.folio.idmconnect.IdmClientConfig.Builder;
 import org.junit.Test;
 
@@ -32,4 +35,67 @@ public class IdmClientConfigTest {
 
     assertThat(new IdmClientConfig.Builder().build().isIdmTrustAll()).isFalse();
   }
+
+  @Test
+  public void testConnectionDefaults() {
+    IdmClientConfig config = new Builder().build();
+
+    assertThat(config.getIdmMaxPoolSize()).isEqualTo(PoolOptions.DEFAULT_MAX_POOL_SIZE);
+    assertThat(config.getIdmMaxWaitQueueSize()).isEqualTo(PoolOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE);
+    assertThat(config.isIdmKeepAlive()).isTrue();
+    assertThat(config.getIdmKeepAliveTimeout())
+        .isEqualTo(HttpClientOptions.DEFAULT_KEEP_ALIVE_TIMEOUT);
+    assertThat(config.getIdmIdleTimeout()).isEqualTo(HttpClientOptions.DEFAULT_IDLE_TIMEOUT);
+    assertThat(config.isIdmPipelining()).isFalse();
+    assertThat(config.isIdmHttp2()).isFalse();
+    assertThat(config.getIdmTimeoutConfig(IdmOperation.SEARCH)).isEqualTo(TimeoutConfig.DEFAULT);
+    assertThat(config.isIdmSearchHedging()).isFalse();
+    assertThat(config.getIdmRetryConfig(IdmOperation.PUT_CONTRACT)).isEqualTo(RetryConfig.DEFAULT);
+    assertThat(config.getIdmRetryBudget()).isEqualTo(IdmClientConfig.DEFAULT_RETRY_BUDGET);
+    assertThat(config.getIdmTenantLimitConfig()).isEqualTo(TenantLimitConfig.DEFAULT);
+  }
+
+  @Test
+  public void testConnectionOptionsAreApplied() {
+    IdmClientConfig config =
+        new Builder()
+            .idmMaxPoolSize(20)
+            .idmMaxWaitQueueSize(100)
+            .idmKeepAlive(false)
+            .idmKeepAliveTimeout(30)
+            .idmIdleTimeout(10)
+            .idmPipelining(true)
+            .idmHttp2(true)
+            .idmHttp2MultiplexingLimit(50)
+            .build();
+
+    HttpClientOptions httpClientOptions = IdmClientFactory.createHttpClientOptions(config);
+    assertThat(httpClientOptions.isKeepAlive()).isFalse();
+    assertThat(httpClientOptions.getKeepAliveTimeout()).isEqualTo(30);
+    assertThat(httpClientOptions.getIdleTimeout()).isEqualTo(10);
+    assertThat(httpClientOptions.isPipelining()).isTrue();
+    assertThat(httpClientOptions.getProtocolVersion()).isEqualTo(HttpVersion.HTTP_2);
+    assertThat(httpClientOptions.isUseAlpn()).isTrue();
+    assertThat(httpClientOptions.getHttp2MultiplexingLimit()).isEqualTo(50);
+
+    PoolOptions poolOptions = IdmClientFactory.createPoolOptions(config);
+    assertThat(poolOptions.getHttp1MaxSize()).isEqualTo(20);
+    assertThat(poolOptions.getMaxWaitQueueSize()).isEqualTo(100);
+  }
+
+  @Test
+  public void testTransmitConcurrencyIsLimitedByTenantLimit() {
+    Builder builder = new Builder().idmTransmitConcurrency(5);
+
+    assertThat(builder.build().getIdmTransmitConcurrency()).isEqualTo(5);
+    assertThat(builder.idmTenantLimit(new TenantLimitConfig(2, 0, 0)).build())
+        .extracting(IdmClientConfig::getIdmTransmitConcurrency)
+        .isEqualTo(2);
+    assertThat(builder.idmTenantLimit(new TenantLimitConfig(8, 0, 0)).build())
+        .extracting(IdmClientConfig::getIdmTransmitConcurrency)
+        .isEqualTo(5);
+    assertThat(builder.idmTenantLimit(new TenantLimitConfig(0, 0, 0)).build())
+        .extracting(IdmClientConfig::getIdmTransmitConcurrency)
+        .isEqualTo(5);
+  }
 }
@@ -0,0 +1,115 @@
+package org.folio.idmconnect;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.junit5.VertxExtension;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import javax.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("IdmClientFactory Integration Tests")
+class IdmClientFactoryIT {
+
+  private static final int REQUEST_COUNT = 20;
+
+  @RegisterExtension
+  static WireMockExtension idmServer =
+      WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+  private final AtomicInteger connectionCount = new AtomicInteger();
+  private HttpClient httpClient;
+
+  @BeforeEach
+  void setup() {
+    connectionCount.set(0);
+    idmServer.stubFor(
+        get(urlPathEqualTo("/search")).willReturn(aResponse().withStatus(200).withBody("[]")));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (httpClient != null) {
+      httpClient.close();
+    }
+  }
+
+  @Test
+  @DisplayName("Should reuse connections for sequential requests with keep-alive")
+  void connectionIsReusedWithKeepAlive(Vertx vertx) throws Exception {
+    IdmClient idmClient = createIdmClient(vertx, createConfigBuilder().idmKeepAlive(true).build());
+
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      assertThat(search(idmClient).toCompletionStage().toCompletableFuture().get().getStatus())
+          .isEqualTo(200);
+    }
+
+    idmServer.verify(REQUEST_COUNT, getRequestedFor(urlPathEqualTo("/search")));
+    // a response may complete before its connection is handed back to the pool, so the pool can
+    // occasionally open a second connection
+    assertThat(connectionCount.get()).isBetween(1, 2);
+  }
+
+  @Test
+  @DisplayName("Should open a new connection per request without keep-alive")
+  void connectionIsNotReusedWithoutKeepAlive(Vertx vertx) throws Exception {
+    IdmClient idmClient = createIdmClient(vertx, createConfigBuilder().idmKeepAlive(false).build());
+
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      assertThat(search(idmClient).toCompletionStage().toCompletableFuture().get().getStatus())
+          .isEqualTo(200);
+    }
+
+    assertThat(connectionCount.get()).isEqualTo(REQUEST_COUNT);
+  }
+
+  @Test
+  @DisplayName("Should not open more connections than the pool size for concurrent requests")
+  void concurrentRequestsAreLimitedByPoolSize(Vertx vertx) throws Exception {
+    idmServer.stubFor(
+        get(urlPathEqualTo("/search")).willReturn(aResponse().withStatus(200).withFixedDelay(100)));
+    IdmClient idmClient = createIdmClient(vertx, createConfigBuilder().idmMaxPoolSize(2).build());
+
+    List<Future<Response>> responses =
+        IntStream.range(0, REQUEST_COUNT).mapToObj(i -> search(idmClient)).toList();
+    Future.all(responses).toCompletionStage().toCompletableFuture().get();
+
+    assertThat(responses).allSatisfy(f -> assertThat(f.result().getStatus()).isEqualTo(200));
+    assertThat(connectionCount.get()).isEqualTo(2);
+  }
+
+  private IdmClientConfig.Builder createConfigBuilder() {
+    return new IdmClientConfig.Builder().idmUrl(idmServer.baseUrl() + "/search");
+  }
+
+  private IdmClient createIdmClient(Vertx vertx, IdmClientConfig config) {
+    httpClient =
+        vertx
+            .httpClientBuilder()
+            .with(IdmClientFactory.createHttpClientOptions(config))
+            .with(IdmClientFactory.createPoolOptions(config))
+            .withConnectHandler(connection -> connectionCount.incrementAndGet())
+            .build();
+    return new IdmClientImpl(config, httpClient);
+  }
+
+  private Future<Response> search(IdmClient idmClient) {
+    return idmClient.search("John", "Doe", "1990-01-15");
+  }
+}
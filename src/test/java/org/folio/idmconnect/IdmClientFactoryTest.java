@@ -0,0 +1,142 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("IdmClientFactory Unit Tests")
+class IdmClientFactoryTest {
+
+  private final Vertx otherVertx = Vertx.vertx();
+
+  @AfterEach
+  void tearDown(Vertx vertx) {
+    IdmClientFactory.close(vertx);
+    IdmClientFactory.close(otherVertx);
+    otherVertx.close();
+  }
+
+  @Test
+  @DisplayName("Should return the same client for the same Vert.x instance")
+  void testSameClientIsReturned(Vertx vertx) {
+    IdmClientFactory.init(vertx);
+
+    assertThat(IdmClientFactory.getIdmClient(vertx)).isSameAs(IdmClientFactory.getIdmClient(vertx));
+  }
+
+  @Test
+  @DisplayName("Should return separate clients for separate Vert.x instances")
+  void testClientPerVertx(Vertx vertx) {
+    assertThat(IdmClientFactory.getIdmClient(vertx))
+        .isNotSameAs(IdmClientFactory.getIdmClient(otherVertx));
+  }
+
+  @Test
+  @DisplayName("Should rebuild the clients when the configuration is reloaded")
+  void testReloadRebuildsClient(Vertx vertx) {
+    IdmClient before = IdmClientFactory.getIdmClient(vertx);
+
+    IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().idmUrl("http://a").build());
+    IdmClient after = IdmClientFactory.getIdmClient(vertx);
+
+    assertThat(after).isNotSameAs(before).isSameAs(IdmClientFactory.getIdmClient(vertx));
+  }
+
+  @Test
+  @DisplayName("Should return the same tenant limited clients until the configuration is reloaded")
+  void testTenantClientIsReused(Vertx vertx) {
+    IdmClient before = IdmClientFactory.getIdmClient(vertx, "diku");
+    IdmClient outboxBefore = IdmClientFactory.getOutboxIdmClient(vertx, "diku");
+
+    assertThat(IdmClientFactory.getIdmClient(vertx, "diku")).isSameAs(before);
+    assertThat(IdmClientFactory.getOutboxIdmClient(vertx, "diku"))
+        .isSameAs(outboxBefore)
+        .isNotSameAs(before);
+    assertThat(IdmClientFactory.getIdmClient(vertx, "other")).isNotSameAs(before);
+    assertThat(IdmClientFactory.getIdmClient(otherVertx, "diku")).isNotSameAs(before);
+
+    IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().build());
+    assertThat(IdmClientFactory.getIdmClient(vertx, "diku")).isNotSameAs(before);
+    assertThat(IdmClientFactory.getOutboxIdmClient(vertx, "diku")).isNotSameAs(outboxBefore);
+  }
+
+  @Test
+  @DisplayName("Should share the limiter of a tenant and start a new one if its limits change")
+  void testTenantLimiterPerTenant() {
+    IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().build());
+    TenantLimiter before = IdmClientFactory.getTenantLimiter("diku");
+
+    assertThat(IdmClientFactory.getTenantLimiter("diku")).isSameAs(before);
+    assertThat(IdmClientFactory.getTenantLimiter("other")).isNotSameAs(before);
+
+    IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().build());
+    assertThat(IdmClientFactory.getTenantLimiter("diku")).isSameAs(before);
+
+    IdmClientFactory.setIdmClientConfig(
+        new IdmClientConfig.Builder().idmTenantLimit(new TenantLimitConfig(2, 0, 0)).build());
+    assertThat(IdmClientFactory.getTenantLimiter("diku")).isNotSameAs(before);
+  }
+
+  @Test
+  @DisplayName("Should keep circuit breakers and the retry budget whose configuration is unchanged")
+  void testReloadKeepsUnchangedBreakersAndBudget() {
+    IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().build());
+    Map<IdmOperation, CircuitBreaker> before = IdmClientFactory.getCircuitBreakers();
+    RetryBudget budgetBefore = IdmClientFactory.getRetryBudget();
+
+    IdmClientFactory.setIdmClientConfig(
+        new IdmClientConfig.Builder()
+            .idmCircuitBreaker(IdmOperation.SEARCH, new CircuitBreakerConfig(1, 1000, 0))
+            .build());
+    Map<IdmOperation, CircuitBreaker> after = IdmClientFactory.getCircuitBreakers();
+    assertThat(after.get(IdmOperation.SEARCH)).isNotSameAs(before.get(IdmOperation.SEARCH));
+    assertThat(after.get(IdmOperation.PUT_CONTRACT))
+        .isSameAs(before.get(IdmOperation.PUT_CONTRACT));
+    assertThat(IdmClientFactory.getRetryBudget()).isSameAs(budgetBefore);
+
+    IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().idmRetryBudget(50).build());
+    assertThat(IdmClientFactory.getRetryBudget()).isNotSameAs(budgetBefore);
+  }
+
+  @Test
+  @DisplayName("Should give replaced clients the longest total timeout to complete their requests")
+  void testShutdownTimeout() {
+    assertThat(IdmClientFactory.getShutdownTimeout(new IdmClientConfig.Builder().build()))
+        .isEqualTo(TimeoutConfig.DEFAULT.totalTimeout());
+    assertThat(
+            IdmClientFactory.getShutdownTimeout(
+                new IdmClientConfig.Builder()
+                    .idmTimeout(IdmOperation.POST_CONTRACT, new TimeoutConfig(5000, 30000, 90000))
+                    .build()))
+        .isEqualTo(90000);
+  }
+
+  @Test
+  @DisplayName("Should read the outbox configuration once and again on reload")
+  void testOutboxConfigIsReadOnce() {
+    OutboxConfig before = IdmClientFactory.getOutboxConfig();
+
+    assertThat(IdmClientFactory.getOutboxConfig()).isSameAs(before);
+
+    IdmClientFactory.reload();
+    assertThat(IdmClientFactory.getOutboxConfig()).isNotSameAs(before).isEqualTo(before);
+  }
+
+  @Test
+  @DisplayName("Should read the bulk configuration once and again on reload")
+  void testBulkConfigIsReadOnce() {
+    BulkConfig before = IdmClientFactory.getBulkConfig();
+
+    assertThat(IdmClientFactory.getBulkConfig()).isSameAs(before);
+
+    IdmClientFactory.reload();
+    assertThat(IdmClientFactory.getBulkConfig()).isNotSameAs(before).isEqualTo(before);
+  }
+}
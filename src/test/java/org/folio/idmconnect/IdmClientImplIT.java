@@ -13,8 +13,7 @@ import static org.folio.utils.TestConstants.createProxySelector;
 
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import io.vertx.core.Vertx;
-import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.core.http.HttpClient;
 import io.vertx.junit5.VertxExtension;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
@@ -42,30 +41,31 @@ class IdmClientImplIT {
       WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
 
   private static final ProxySelector originalProxySelector = ProxySelector.getDefault();
-  private static WebClient webClient;
-  private static IdmClient idmClient;
+  private static HttpClient httpClient;
+  private IdmClient idmClient;
 
   @BeforeAll
   static void beforeAll(Vertx vertx) {
-    webClient = WebClient.create(vertx, new WebClientOptions());
-    IdmClientConfig config =
-        new IdmClientConfig.Builder()
-            .idmUrl("http://localhost:" + targetServer.getPort() + "/search")
-            .idmToken("test-token")
-            .build();
-    idmClient = new IdmClientImpl(config, webClient);
+    httpClient = vertx.createHttpClient();
   }
 
   @AfterAll
   static void afterAll() {
     ProxySelector.setDefault(originalProxySelector);
-    if (webClient != null) {
-      webClient.close();
+    if (httpClient != null) {
+      httpClient.close();
     }
   }
 
   @BeforeEach
   void setup() {
+    // the client caches the resolved proxy, so every test needs a fresh one
+    IdmClientConfig config =
+        new IdmClientConfig.Builder()
+            .idmUrl("http://localhost:" + targetServer.getPort() + "/search")
+            .idmToken("test-token")
+            .build();
+    idmClient = new IdmClientImpl(config, httpClient);
     targetServer.stubFor(get(urlPathEqualTo("/search")).willReturn(aResponse().withStatus(200)));
     proxyServer.stubFor(
         get(urlMatching(".*"))
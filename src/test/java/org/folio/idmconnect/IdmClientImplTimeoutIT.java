@@ -0,0 +1,212 @@
+package org.folio.idmconnect;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.junit5.VertxExtension;
+import javax.ws.rs.core.Response;
+import org.folio.rest.jaxrs.model.Contract;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("IdmClientImpl Timeout Integration Tests")
+class IdmClientImplTimeoutIT {
+
+  private static final String SEARCH_PATH = "/search";
+  private static final String CONTRACT_PATH = "/contracts";
+  private static final int SLOW = 3000;
+
+  @RegisterExtension
+  static WireMockExtension idmServer =
+      WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+  private HttpClient httpClient;
+
+  @BeforeEach
+  void setup(Vertx vertx) {
+    httpClient = vertx.createHttpClient();
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH)).willReturn(aResponse().withStatus(200).withBody("[]")));
+  }
+
+  @AfterEach
+  void tearDown() {
+    httpClient.close();
+  }
+
+  private IdmClient createIdmClient(IdmClientConfig.Builder builder) {
+    return new IdmClientImpl(
+        builder
+            .idmUrl(idmServer.baseUrl() + SEARCH_PATH)
+            .idmContractUrl(idmServer.baseUrl() + CONTRACT_PATH)
+            .build(),
+        httpClient);
+  }
+
+  /** Returns a hedging client that has searched enough to hedge the first "Slow" search. */
+  private IdmClient createHedgingIdmClient() throws Exception {
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .withQueryParam("givenname", equalTo("Slow"))
+            .inScenario("hedging")
+            .whenScenarioStateIs(STARTED)
+            .willReturn(aResponse().withStatus(200).withBody("[1]").withFixedDelay(SLOW))
+            .willSetStateTo("hedged"));
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .withQueryParam("givenname", equalTo("Slow"))
+            .inScenario("hedging")
+            .whenScenarioStateIs("hedged")
+            .willReturn(aResponse().withStatus(200).withBody("[2]")));
+    IdmClient idmClient =
+        createIdmClient(
+            new IdmClientConfig.Builder().idmSearchHedging(true).idmSearchHedgingMinDelay(100));
+    // the delay is the 95th percentile of the recent searches, so some are needed first
+    for (int i = 0; i < 20; i++) {
+      await(idmClient.search("John", "Doe", "1998-12-24"));
+    }
+    return idmClient;
+  }
+
+  private static Response await(Future<Response> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get();
+  }
+
+  @Test
+  @DisplayName("Should fail a request that exceeds the total timeout of its operation")
+  void totalTimeoutIsApplied() throws Exception {
+    idmServer.stubFor(
+        put(urlPathEqualTo(CONTRACT_PATH))
+            .willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withBody("x".repeat(100))
+                    .withChunkedDribbleDelay(10, SLOW)));
+    IdmClient idmClient =
+        createIdmClient(
+            new IdmClientConfig.Builder()
+                .idmTimeout(IdmOperation.PUT_CONTRACT, new TimeoutConfig(0, 0, 200)));
+
+    long start = System.currentTimeMillis();
+    Response response = await(idmClient.putContract(new Contract()));
+
+    assertThat(response.getStatus()).isEqualTo(500);
+    assertThat(System.currentTimeMillis() - start).isLessThan(SLOW);
+    assertThat(await(idmClient.search("John", "Doe", "1998-12-24")).getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  @DisplayName("Should free the connection of a request that exceeds the total timeout")
+  void totalTimeoutFreesConnection(Vertx vertx) throws Exception {
+    idmServer.stubFor(
+        put(urlPathEqualTo(CONTRACT_PATH))
+            .willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withBody("x".repeat(100))
+                    .withChunkedDribbleDelay(10, SLOW)));
+    httpClient.close();
+    httpClient =
+        vertx.createHttpClient(new HttpClientOptions(), new PoolOptions().setHttp1MaxSize(1));
+    IdmClient idmClient =
+        createIdmClient(
+            new IdmClientConfig.Builder()
+                .idmTimeout(IdmOperation.PUT_CONTRACT, new TimeoutConfig(0, 0, 200)));
+
+    long start = System.currentTimeMillis();
+    assertThat(await(idmClient.putContract(new Contract())).getStatus()).isEqualTo(500);
+    // the only connection must not be busy until the slow response has been received
+    assertThat(await(idmClient.search("John", "Doe", "1998-12-24")).getStatus()).isEqualTo(200);
+    assertThat(System.currentTimeMillis() - start).isLessThan(SLOW);
+  }
+
+  @Test
+  @DisplayName("Should fail a request whose response stalls longer than the idle timeout")
+  void idleTimeoutIsApplied() throws Exception {
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(SLOW)));
+    IdmClient idmClient =
+        createIdmClient(
+            new IdmClientConfig.Builder()
+                .idmTimeout(IdmOperation.SEARCH, new TimeoutConfig(0, 200, 0)));
+
+    long start = System.currentTimeMillis();
+    Response response = await(idmClient.search("John", "Doe", "1998-12-24"));
+
+    assertThat(response.getStatus()).isEqualTo(500);
+    assertThat(System.currentTimeMillis() - start).isLessThan(SLOW);
+  }
+
+  @Test
+  @DisplayName("Should send a second search request and use the first response if hedging")
+  void slowSearchIsHedged() throws Exception {
+    IdmClient idmClient = createHedgingIdmClient();
+
+    long start = System.currentTimeMillis();
+    Response response = await(idmClient.search("Slow", "Doe", "1998-12-24"));
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getEntity()).isEqualTo("[2]".getBytes());
+    assertThat(System.currentTimeMillis() - start).isLessThan(SLOW);
+    idmServer.verify(
+        2,
+        getRequestedFor(urlPathEqualTo(SEARCH_PATH)).withQueryParam("givenname", equalTo("Slow")));
+  }
+
+  @Test
+  @DisplayName("Should reset the request that loses a hedged search")
+  void losingHedgedSearchIsReset(Vertx vertx) throws Exception {
+    Promise<Void> closed = Promise.promise();
+    httpClient.close();
+    httpClient =
+        vertx
+            .httpClientBuilder()
+            .withConnectHandler(connection -> connection.closeHandler(v -> closed.tryComplete()))
+            .build();
+    IdmClient idmClient = createHedgingIdmClient();
+
+    assertThat(await(idmClient.search("Slow", "Doe", "1998-12-24")).getStatus()).isEqualTo(200);
+    // the connection of the first request is closed instead of waiting for the slow response
+    closed.future().toCompletionStage().toCompletableFuture().get(SLOW / 2, MILLISECONDS);
+  }
+
+  @Test
+  @DisplayName("Should not hedge searches if hedging is disabled")
+  void searchIsNotHedgedByDefault() throws Exception {
+    IdmClient idmClient = createIdmClient(new IdmClientConfig.Builder());
+    for (int i = 0; i < 20; i++) {
+      await(idmClient.search("John", "Doe", "1998-12-24"));
+    }
+    idmServer.stubFor(
+        get(urlPathEqualTo(SEARCH_PATH))
+            .withQueryParam("givenname", equalTo("Slow"))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(500)));
+
+    await(idmClient.search("Slow", "Doe", "1998-12-24"));
+
+    idmServer.verify(
+        1,
+        getRequestedFor(urlPathEqualTo(SEARCH_PATH)).withQueryParam("givenname", equalTo("Slow")));
+  }
+}
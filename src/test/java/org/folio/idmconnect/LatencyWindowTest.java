@@ -0,0 +1,45 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("LatencyWindow Unit Tests")
+class LatencyWindowTest {
+
+  @Test
+  void testPercentile() {
+    LatencyWindow window = new LatencyWindow(100);
+    for (int i = 100; i > 0; i--) {
+      window.record(i);
+    }
+
+    assertThat(window.percentile(0.95, 1)).isEqualTo(95);
+    assertThat(window.percentile(0.5, 1)).isEqualTo(50);
+    assertThat(window.percentile(1, 1)).isEqualTo(100);
+    assertThat(window.percentile(0, 1)).isEqualTo(1);
+  }
+
+  @Test
+  void testTooFewLatencies() {
+    LatencyWindow window = new LatencyWindow(10);
+    assertThat(window.percentile(0.95, 0)).isEqualTo(-1);
+    window.record(5);
+    window.record(7);
+
+    assertThat(window.percentile(0.95, 3)).isEqualTo(-1);
+    assertThat(window.percentile(0.95, 2)).isEqualTo(7);
+  }
+
+  @Test
+  void testOldestLatenciesAreDropped() {
+    LatencyWindow window = new LatencyWindow(3);
+    window.record(1000);
+    window.record(1);
+    window.record(2);
+    window.record(3);
+
+    assertThat(window.percentile(1, 3)).isEqualTo(3);
+  }
+}
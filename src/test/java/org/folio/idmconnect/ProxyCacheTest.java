@@ -0,0 +1,91 @@
+package org.folio.idmconnect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.net.ProxyOptions;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ProxyCache Unit Tests")
+class ProxyCacheTest {
+
+  private static final ProxySelector originalProxySelector = ProxySelector.getDefault();
+  private static final Proxy HTTP_PROXY =
+      new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy.example.com", 8080));
+
+  private final AtomicInteger selectCount = new AtomicInteger();
+
+  @AfterAll
+  static void restoreProxySelector() {
+    ProxySelector.setDefault(originalProxySelector);
+  }
+
+  @BeforeEach
+  void setup() {
+    ProxySelector.setDefault(
+        new ProxySelector() {
+          @Override
+          public List<Proxy> select(URI uri) {
+            selectCount.incrementAndGet();
+            return List.of(HTTP_PROXY);
+          }
+
+          @Override
+          public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+            // No-op for test
+          }
+        });
+  }
+
+  @Test
+  @DisplayName("Should resolve the proxy once per scheme, host and port")
+  void testProxyIsResolvedOncePerKey() {
+    ProxyCache proxyCache = new ProxyCache(0, TimeUnit.SECONDS);
+
+    Optional<ProxyOptions> first = proxyCache.get("http://idm.example.com/search");
+    Optional<ProxyOptions> second = proxyCache.get("http://idm.example.com:80/contracts");
+    proxyCache.get("http://idm.example.com/search");
+    proxyCache.get("https://idm.example.com/search");
+
+    assertThat(first).isPresent().containsSame(second.orElseThrow());
+    assertThat(first.get().getHost()).isEqualTo("proxy.example.com");
+    assertThat(selectCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should resolve the proxy again after the TTL expired")
+  void testProxyIsRefreshedAfterTtl() throws InterruptedException {
+    ProxyCache proxyCache = new ProxyCache(10, TimeUnit.MILLISECONDS);
+
+    proxyCache.get("http://idm.example.com/search");
+    proxyCache.get("http://idm.example.com/search");
+    assertThat(selectCount.get()).isEqualTo(1);
+
+    Thread.sleep(20);
+    proxyCache.get("http://idm.example.com/search");
+    assertThat(selectCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should derive the cache key from scheme, host and port")
+  void testToKey() {
+    assertThat(ProxyCache.toKey("http://Host.example.com/a?b=c"))
+        .isEqualTo("http://host.example.com:80");
+    assertThat(ProxyCache.toKey("https://host.example.com/a"))
+        .isEqualTo("https://host.example.com:443");
+    assertThat(ProxyCache.toKey("http://host.example.com:8080/a"))
+        .isEqualTo("http://host.example.com:8080");
+  }
+}
@@ -0,0 +1,86 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import javax.ws.rs.core.Response;
+import org.folio.idmconnect.RetryBudget.Stats;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("RetryBudget Unit Tests")
+class RetryBudgetTest {
+
+  private static int withdrawAll(RetryBudget budget) {
+    int withdrawn = 0;
+    while (budget.tryWithdraw()) {
+      withdrawn++;
+    }
+    return withdrawn;
+  }
+
+  @Test
+  void testBudgetStartsFull() {
+    RetryBudget budget = new RetryBudget(0);
+
+    assertThat(withdrawAll(budget)).isEqualTo(RetryBudget.MAX_BALANCE);
+    assertThat(budget.getStats()).isEqualTo(new Stats(10, 0, 0, 1));
+  }
+
+  @Test
+  void testCallsRefillBudget() {
+    RetryBudget budget = new RetryBudget(20);
+    withdrawAll(budget);
+    for (int i = 0; i < 10; i++) {
+      budget.deposit();
+    }
+
+    assertThat(withdrawAll(budget)).isEqualTo(2);
+  }
+
+  @Test
+  void testBalanceIsCapped() {
+    RetryBudget budget = new RetryBudget(100);
+    for (int i = 0; i < 100; i++) {
+      budget.deposit();
+    }
+
+    assertThat(withdrawAll(budget)).isEqualTo(RetryBudget.MAX_BALANCE);
+  }
+
+  @Test
+  void testNegativePercentIsRejected() {
+    assertThatThrownBy(() -> new RetryBudget(-1))
+        .hasMessageContaining(IdmClientConfig.ENVVAR_IDM_RETRY_BUDGET);
+  }
+
+  @Test
+  void testRetryAfter() {
+    Instant now = Instant.parse("2026-01-01T12:00:00Z");
+
+    assertThat(RetryingIdmClient.getRetryAfter(Response.status(503).build(), now)).isZero();
+    assertThat(retryAfter("2", now)).isEqualTo(2000);
+    assertThat(retryAfter("-2", now)).isZero();
+    assertThat(retryAfter("Thu, 01 Jan 2026 12:00:05 GMT", now)).isEqualTo(5000);
+    assertThat(retryAfter("Thu, 01 Jan 2026 11:00:00 GMT", now)).isZero();
+    assertThat(retryAfter("soon", now)).isZero();
+  }
+
+  private static long retryAfter(String header, Instant now) {
+    return RetryingIdmClient.getRetryAfter(
+        Response.status(503).header(RETRY_AFTER, header).build(), now);
+  }
+
+  @Test
+  void testIsRetryable() {
+    assertThat(RetryingIdmClient.isRetryable(Response.status(500).build())).isTrue();
+    assertThat(RetryingIdmClient.isRetryable(Response.status(503).build())).isTrue();
+    assertThat(RetryingIdmClient.isRetryable(Response.status(408).build())).isTrue();
+    assertThat(RetryingIdmClient.isRetryable(Response.status(429).build())).isTrue();
+    assertThat(RetryingIdmClient.isRetryable(Response.status(400).build())).isFalse();
+    assertThat(RetryingIdmClient.isRetryable(Response.status(404).build())).isFalse();
+    assertThat(RetryingIdmClient.isRetryable(Response.status(200).build())).isFalse();
+  }
+}
@@ -0,0 +1,224 @@
+package org.folio.idmconnect;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.matching.UrlPattern;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.junit5.VertxExtension;
+import java.util.function.Function;
+import javax.ws.rs.core.Response;
+import org.folio.idmconnect.RetryBudget.Stats;
+import org.folio.rest.jaxrs.model.Contract;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("RetryingIdmClient Integration Tests")
+class RetryingIdmClientIT {
+
+  private static final String SEARCH_PATH = "/search";
+  private static final String CONTRACT_PATH = "/contracts";
+  private static final String READER_NUMBER_PATH = "/readernumber";
+
+  @RegisterExtension
+  static WireMockExtension idmServer =
+      WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+  private HttpClient httpClient;
+  private RetryBudget retryBudget;
+  private IdmClient idmClient;
+
+  @BeforeEach
+  void setup(Vertx vertx) {
+    httpClient = vertx.createHttpClient();
+    retryBudget = new RetryBudget(IdmClientConfig.DEFAULT_RETRY_BUDGET);
+    IdmClientConfig config =
+        new IdmClientConfig.Builder()
+            .idmUrl(idmServer.baseUrl() + SEARCH_PATH)
+            .idmContractUrl(idmServer.baseUrl() + CONTRACT_PATH)
+            .idmReaderNumberUrl(idmServer.baseUrl() + READER_NUMBER_PATH)
+            .build();
+    idmClient =
+        new RetryingIdmClient(vertx, new IdmClientImpl(config, httpClient), config, retryBudget);
+  }
+
+  @AfterEach
+  void tearDown() {
+    httpClient.close();
+  }
+
+  private static Response await(Future<Response> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get();
+  }
+
+  /** Stubs the first request to fail with {@code failure} and all following ones to succeed. */
+  private static void stubFailingOnce(
+      Function<UrlPattern, MappingBuilder> method, String path, ResponseDefinitionBuilder failure) {
+    idmServer.stubFor(
+        method
+            .apply(urlPathEqualTo(path))
+            .inScenario("retry")
+            .whenScenarioStateIs(STARTED)
+            .willReturn(failure)
+            .willSetStateTo("available"));
+    idmServer.stubFor(
+        method
+            .apply(urlPathEqualTo(path))
+            .inScenario("retry")
+            .whenScenarioStateIs("available")
+            .willReturn(aResponse().withStatus(200).withBody("[]")));
+  }
+
+  @Test
+  @DisplayName("Should retry a search after a transient 503")
+  void transientErrorIsRetried() throws Exception {
+    stubFailingOnce(WireMock::get, SEARCH_PATH, aResponse().withStatus(503));
+
+    Response response = await(idmClient.search("John", "Doe", "1998-12-24"));
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    idmServer.verify(2, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+    assertThat(retryBudget.getStats()).isEqualTo(new Stats(1, 1, 0, 0));
+  }
+
+  @Test
+  @DisplayName("Should retry a contract update after a connection reset")
+  void connectionResetIsRetried() throws Exception {
+    stubFailingOnce(
+        WireMock::put, CONTRACT_PATH, aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER));
+
+    assertThat(await(idmClient.putContract(new Contract())).getStatus()).isEqualTo(200);
+    idmServer.verify(2, putRequestedFor(urlPathEqualTo(CONTRACT_PATH)));
+  }
+
+  @Test
+  @DisplayName("Should give up after the maximum number of attempts")
+  void attemptsAreLimited() throws Exception {
+    idmServer.stubFor(
+        delete(urlPathEqualTo(READER_NUMBER_PATH)).willReturn(aResponse().withStatus(502)));
+
+    assertThat(await(idmClient.deleteUBReaderNumber("john")).getStatus()).isEqualTo(502);
+    idmServer.verify(
+        RetryConfig.DEFAULT.maxAttempts(), deleteRequestedFor(urlPathEqualTo(READER_NUMBER_PATH)));
+    assertThat(retryBudget.getStats()).isEqualTo(new Stats(2, 0, 1, 0));
+  }
+
+  @Test
+  @DisplayName("Should wait as long as Retry-After asks for")
+  void retryAfterIsHonored() throws Exception {
+    stubFailingOnce(
+        WireMock::get, SEARCH_PATH, aResponse().withStatus(429).withHeader(RETRY_AFTER, "1"));
+
+    long start = System.currentTimeMillis();
+    Response response = await(idmClient.search("John", "Doe", "1998-12-24"));
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(1000);
+  }
+
+  @Test
+  @DisplayName("Should not hold the tenant limiter permit while waiting to retry")
+  void tenantPermitIsTakenPerAttempt(Vertx vertx) throws Exception {
+    stubFailingOnce(
+        WireMock::get, SEARCH_PATH, aResponse().withStatus(429).withHeader(RETRY_AFTER, "1"));
+    TenantLimiter limiter = new TenantLimiter("diku", new TenantLimitConfig(1, 0, 0));
+    IdmClient limitedClient = createTenantLimitedClient(vertx, limiter);
+
+    Future<Response> retried = limitedClient.search("John", "Doe", "1998-12-24");
+    Thread.sleep(300);
+
+    assertThat(limiter.getStats().inFlight()).isZero();
+    assertThat(await(limitedClient.search("Jane", "Doe", "1998-12-24")).getStatus()).isEqualTo(200);
+    assertThat(retried.isComplete()).isFalse();
+    assertThat(await(retried).getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  @DisplayName("Should not retry a call rejected by the tenant limiter")
+  void tenantLimiterRejectionIsNotRetried(Vertx vertx) throws Exception {
+    idmServer.stubFor(get(urlPathEqualTo(SEARCH_PATH)).willReturn(aResponse().withStatus(200)));
+    TenantLimiter limiter = new TenantLimiter("diku", new TenantLimitConfig(0, 1, 1));
+    IdmClient limitedClient = createTenantLimitedClient(vertx, limiter);
+    await(limitedClient.search("John", "Doe", "1998-12-24"));
+
+    long start = System.currentTimeMillis();
+    Response response = await(limitedClient.search("John", "Doe", "1998-12-24"));
+
+    assertThat(response.getStatus()).isEqualTo(429);
+    assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+    idmServer.verify(1, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+    assertThat(limiter.getStats().rateLimited()).isEqualTo(1);
+  }
+
+  private IdmClient createTenantLimitedClient(Vertx vertx, TenantLimiter limiter) {
+    IdmClientConfig config =
+        new IdmClientConfig.Builder().idmUrl(idmServer.baseUrl() + SEARCH_PATH).build();
+    return new RetryingIdmClient(
+        vertx,
+        new TenantLimitingIdmClient(new IdmClientImpl(config, httpClient), config, limiter),
+        config,
+        retryBudget);
+  }
+
+  @Test
+  @DisplayName("Should not retry if Retry-After asks for longer than the maximum delay")
+  void longRetryAfterIsNotRetried() throws Exception {
+    stubFailingOnce(
+        WireMock::get, SEARCH_PATH, aResponse().withStatus(503).withHeader(RETRY_AFTER, "60"));
+
+    Response response = await(idmClient.search("John", "Doe", "1998-12-24"));
+
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(response.getHeaderString(RETRY_AFTER)).isEqualTo("60");
+    idmServer.verify(1, getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+  }
+
+  @Test
+  @DisplayName("Should not retry creating a contract")
+  void postIsNotRetried() throws Exception {
+    stubFailingOnce(WireMock::post, CONTRACT_PATH, aResponse().withStatus(503));
+
+    assertThat(await(idmClient.postContract(new Contract())).getStatus()).isEqualTo(503);
+    idmServer.verify(1, postRequestedFor(urlPathEqualTo(CONTRACT_PATH)));
+  }
+
+  @Test
+  @DisplayName("Should stop retrying when the retry budget is used up")
+  void retryBudgetIsEnforced() throws Exception {
+    idmServer.stubFor(get(urlPathEqualTo(SEARCH_PATH)).willReturn(aResponse().withStatus(503)));
+    int searches = 20;
+
+    for (int i = 0; i < searches; i++) {
+      assertThat(await(idmClient.search("John", "Doe", "1998-12-24")).getStatus()).isEqualTo(503);
+    }
+
+    // without a budget every search would be retried twice
+    Stats stats = retryBudget.getStats();
+    assertThat(stats.retries()).isLessThan(searches);
+    idmServer.verify(
+        searches + (int) stats.retries(), getRequestedFor(urlPathEqualTo(SEARCH_PATH)));
+    assertThat(stats.rejected()).isPositive();
+  }
+}
@@ -0,0 +1,128 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.ws.rs.core.Response;
+import org.folio.idmconnect.SearchResultCache.Stats;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("SearchResultCache Unit Tests")
+class SearchResultCacheTest {
+
+  private static final String TENANT = "diku";
+
+  private final AtomicInteger searchCount = new AtomicInteger();
+
+  private Supplier<Future<Response>> search(int status) {
+    return () -> {
+      searchCount.incrementAndGet();
+      return Future.succeededFuture(
+          Response.status(status)
+              .header(CONTENT_TYPE, "application/json")
+              .entity("[" + searchCount.get() + "]")
+              .build());
+    };
+  }
+
+  private Response get(SearchResultCache cache, String tenant, String firstName, boolean bypass) {
+    return cache.get(tenant, firstName, "Doe", "1998-12-24", bypass, search(200)).result();
+  }
+
+  @Test
+  void testRepeatedSearchIsServedFromCache() {
+    SearchResultCache cache = new SearchResultCache(10, 1, TimeUnit.MINUTES);
+    Response first = get(cache, TENANT, "John", false);
+    Response second = get(cache, TENANT, "John", false);
+
+    assertThat(searchCount).hasValue(1);
+    assertThat(second.getStatus()).isEqualTo(200);
+    assertThat(second.getHeaderString(CONTENT_TYPE)).isEqualTo("application/json");
+    assertThat(second.getEntity()).isEqualTo(first.getEntity());
+    assertThat(second).isNotSameAs(first);
+    assertThat(cache.getStats()).isEqualTo(new Stats(1, 1, 0, 1));
+  }
+
+  @Test
+  void testKeyIsNormalized() {
+    SearchResultCache cache = new SearchResultCache(10, 1, TimeUnit.MINUTES);
+    cache.get(TENANT, "John", "Doe", "1998-12-24", false, search(200));
+    cache.get(TENANT, " JOHN ", "doe", "19981224", false, search(200));
+
+    assertThat(searchCount).hasValue(1);
+  }
+
+  @Test
+  void testTenantsAreIsolated() {
+    SearchResultCache cache = new SearchResultCache(10, 1, TimeUnit.MINUTES);
+    get(cache, TENANT, "John", false);
+    get(cache, "other", "John", false);
+
+    assertThat(searchCount).hasValue(2);
+  }
+
+  @Test
+  void testOnlySuccessfulResultsAreCached() {
+    SearchResultCache cache = new SearchResultCache(10, 1, TimeUnit.MINUTES);
+    cache.get(TENANT, "John", "Doe", null, false, search(401));
+    cache.get(TENANT, "John", "Doe", null, false, search(500));
+    cache.get(TENANT, "John", "Doe", null, false, search(204));
+    cache.get(TENANT, "John", "Doe", null, false, search(204));
+
+    assertThat(searchCount).hasValue(3);
+  }
+
+  @Test
+  void testBypassRefreshesCachedResult() {
+    SearchResultCache cache = new SearchResultCache(10, 1, TimeUnit.MINUTES);
+    get(cache, TENANT, "John", false);
+    Response bypassed = get(cache, TENANT, "John", true);
+    Response cached = get(cache, TENANT, "John", false);
+
+    assertThat(searchCount).hasValue(2);
+    assertThat(cached.getEntity()).isEqualTo(bypassed.getEntity()).isEqualTo("[2]");
+  }
+
+  @Test
+  void testLeastRecentlyUsedResultIsEvicted() {
+    SearchResultCache cache = new SearchResultCache(2, 1, TimeUnit.MINUTES);
+    get(cache, TENANT, "A", false);
+    get(cache, TENANT, "B", false);
+    get(cache, TENANT, "A", false); // A is now most recently used
+    get(cache, TENANT, "C", false); // evicts B
+
+    assertThat(searchCount).hasValue(3);
+    get(cache, TENANT, "A", false);
+    assertThat(searchCount).hasValue(3);
+    get(cache, TENANT, "B", false);
+    assertThat(searchCount).hasValue(4);
+    assertThat(cache.getStats().evictions()).isEqualTo(2);
+    assertThat(cache.getStats().size()).isEqualTo(2);
+  }
+
+  @Test
+  void testExpiredResultIsSearchedAgain() throws InterruptedException {
+    SearchResultCache cache = new SearchResultCache(10, 50, TimeUnit.MILLISECONDS);
+    get(cache, TENANT, "John", false);
+    Thread.sleep(100);
+    get(cache, TENANT, "John", false);
+
+    assertThat(searchCount).hasValue(2);
+    assertThat(cache.getStats()).isEqualTo(new Stats(0, 2, 1, 1));
+  }
+
+  @Test
+  void testDisabledCache() {
+    SearchResultCache cache = new SearchResultCache(0, 1, TimeUnit.MINUTES);
+    get(cache, TENANT, "John", false);
+    get(cache, TENANT, "John", false);
+
+    assertThat(searchCount).hasValue(2);
+    assertThat(cache.getStats()).isEqualTo(new Stats(0, 0, 0, 0));
+  }
+}
@@ -0,0 +1,117 @@
+package org.folio.idmconnect;
+
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.core.Response;
+import org.folio.idmconnect.TenantLimiter.Stats;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("TenantLimiter Unit Tests")
+class TenantLimiterTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  private TenantLimiter tenantLimiter(int maxInFlight, int rateLimit, int rateBurst) {
+    return new TenantLimiter(
+        "diku", new TenantLimitConfig(maxInFlight, rateLimit, rateBurst), nanoTime::get);
+  }
+
+  private void advance(long millis) {
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private static int status(TenantLimiter limiter) {
+    return limiter
+        .execute(() -> Future.succeededFuture(Response.ok().build()))
+        .result()
+        .getStatus();
+  }
+
+  @Test
+  void testBulkheadRejectsCallsOverMaxInFlight() {
+    TenantLimiter limiter = tenantLimiter(2, 0, 0);
+    Promise<Response> first = Promise.promise();
+    Promise<Response> second = Promise.promise();
+    limiter.execute(first::future);
+    limiter.execute(second::future);
+    assertThat(limiter.getStats()).isEqualTo(new Stats(2, 0, 0));
+
+    Response rejected =
+        limiter.execute(() -> Future.succeededFuture(Response.ok().build())).result();
+    assertThat(rejected.getStatus()).isEqualTo(429);
+    assertThat(rejected.getHeaderString(RETRY_AFTER)).isEqualTo("1");
+    assertThat(rejected.getEntity().toString()).contains("diku");
+    assertThat(TenantLimiter.isRejection(rejected)).isTrue();
+    assertThat(TenantLimiter.isRejection(Response.status(429).build())).isFalse();
+
+    first.complete(Response.ok().build());
+    assertThat(status(limiter)).isEqualTo(200);
+    second.fail("connection reset");
+    assertThat(limiter.getStats()).isEqualTo(new Stats(0, 1, 0));
+  }
+
+  @Test
+  void testFailingCallIsReleased() {
+    TenantLimiter limiter = tenantLimiter(1, 0, 0);
+    limiter.execute(
+        () -> {
+          throw new IllegalStateException();
+        });
+
+    assertThat(status(limiter)).isEqualTo(200);
+  }
+
+  @Test
+  void testRateLimitRefillsTokens() {
+    TenantLimiter limiter = tenantLimiter(0, 10, 0);
+    for (int i = 0; i < 10; i++) {
+      assertThat(status(limiter)).isEqualTo(200);
+    }
+    assertThat(status(limiter)).isEqualTo(429);
+
+    advance(99);
+    assertThat(status(limiter)).isEqualTo(429);
+    advance(1);
+    assertThat(status(limiter)).isEqualTo(200);
+    assertThat(status(limiter)).isEqualTo(429);
+    assertThat(limiter.getStats()).isEqualTo(new Stats(0, 0, 3));
+  }
+
+  @Test
+  void testBurstLimitsTokensAfterQuietPeriod() {
+    TenantLimiter limiter = tenantLimiter(0, 10, 2);
+    advance(10_000);
+
+    assertThat(status(limiter)).isEqualTo(200);
+    assertThat(status(limiter)).isEqualTo(200);
+    assertThat(status(limiter)).isEqualTo(429);
+  }
+
+  @Test
+  void testDisabledLimitsNeverReject() {
+    TenantLimiter limiter = tenantLimiter(0, 0, 0);
+    for (int i = 0; i < 100; i++) {
+      limiter.execute(() -> Promise.<Response>promise().future());
+    }
+
+    assertThat(limiter.getStats()).isEqualTo(new Stats(100, 0, 0));
+  }
+
+  @Test
+  void testInvalidConfigIsRejected() {
+    assertThatThrownBy(() -> new TenantLimitConfig(-1, 0, 0))
+        .hasMessageContaining(TenantLimitConfig.ENVVAR_IDM_TENANT_MAX_IN_FLIGHT);
+    assertThatThrownBy(() -> new TenantLimitConfig(0, -1, 0))
+        .hasMessageContaining(TenantLimitConfig.ENVVAR_IDM_TENANT_RATE_LIMIT);
+    assertThatThrownBy(() -> new TenantLimitConfig(0, 0, -1))
+        .hasMessageContaining(TenantLimitConfig.ENVVAR_IDM_TENANT_RATE_BURST);
+    assertThat(TenantLimitConfig.createFromEnvVars()).isEqualTo(TenantLimitConfig.DEFAULT);
+  }
+}
@@ -3,7 +3,10 @@ package org.folio.rest.impl;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.Index.atIndex;
+import static org.folio.idmconnect.Constants.BASE_PATH_EXPORT;
 import static org.folio.idmconnect.Constants.PATH_BULK_DELETE;
+import static org.folio.idmconnect.Constants.PATH_BULK_IMPORT;
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
 import static org.folio.utils.TestConstants.HOST;
 import static org.folio.utils.TestConstants.IDM_TOKEN;
 import static org.folio.utils.TestConstants.PATH_ID;
@@ -15,26 +18,33 @@ import static org.folio.utils.TestEntities.PENDING;
 import static org.folio.utils.TestEntities.TRANSMISSION_ERROR;
 import static org.folio.utils.TestEntities.TRANSMISSION_ERROR_EDIT;
 import static org.folio.utils.TestEntities.UPDATED;
+import static org.hamcrest.Matchers.containsString;
 
 import com.google.common.io.Resources;
 import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.web.client.WebClient;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import org.folio.cql2pgjson.CQL2PgJSON;
 import org.folio.postgres.testing.PostgresTesterContainer;
 import org.folio.rest.client.TenantClient;
 import org.folio.rest.jaxrs.model.BulkDeleteRequest;
 import org.folio.rest.jaxrs.model.BulkDeleteResponse;
+import org.folio.rest.jaxrs.model.BulkImportResponse;
 import org.folio.rest.jaxrs.model.Contract;
 import org.folio.rest.jaxrs.model.Contract.Status;
 import org.folio.rest.jaxrs.model.Contracts;
+import org.folio.rest.jaxrs.model.ImportFailure;
 import org.folio.rest.jaxrs.model.Personal;
 import org.folio.rest.persist.PostgresClient;
 import org.folio.rest.tools.utils.NetworkUtils;
@@ -52,6 +62,14 @@ import org.junit.runner.RunWith;
 public class IdmConnectContractApiIT {
 
   private static final String CONTRACT_JSON = "examplecontract.json";
+  private static final List<String> INDEXED_QUERIES =
+      List.of(
+          "personal.lastName==mül*",
+          "personal.lastName==*ll*",
+          "personal.firstName==*ar*",
+          "personal.email==*@aol.com",
+          "beginDate>=2018-01-01 and beginDate<2018-07-01",
+          "endDate<2020-01-01");
   private static final Vertx vertx = VertxUtils.getVertxFromContextOrNew();
   private static TenantUtil tenantUtil;
   private static Contract sampleContract;
@@ -173,6 +191,57 @@ public class IdmConnectContractApiIT {
     given().delete(PATH_ID, postResult.getId()).then().statusCode(404);
   }
 
+  @Test
+  public void testThatETagsAreSupported() {
+    Contract contract =
+        given().body(sampleContract).post().then().statusCode(201).extract().as(Contract.class);
+    String etag =
+        given().get(PATH_ID, contract.getId()).then().statusCode(200).extract().header("ETag");
+    assertThat(etag).matches("\"\\d+\"");
+
+    given()
+        .header("If-None-Match", etag)
+        .get(PATH_ID, contract.getId())
+        .then()
+        .statusCode(304)
+        .header("ETag", etag);
+    given().header("If-None-Match", "\"0\"").get(PATH_ID, contract.getId()).then().statusCode(200);
+    given()
+        .header("If-None-Match", etag)
+        .get(PATH_ID, UUID.randomUUID().toString())
+        .then()
+        .statusCode(404);
+
+    given()
+        .header("If-Match", "\"0\"")
+        .body(contract.withComment("changed"))
+        .put(PATH_ID, contract.getId())
+        .then()
+        .statusCode(412);
+    given()
+        .header("If-Match", etag)
+        .body(contract.withComment("changed"))
+        .put(PATH_ID, contract.getId())
+        .then()
+        .statusCode(204);
+    given()
+        .header("If-Match", etag)
+        .body(contract.withComment("changed again"))
+        .put(PATH_ID, contract.getId())
+        .then()
+        .statusCode(412);
+
+    String newETag =
+        given()
+            .header("If-None-Match", etag)
+            .get(PATH_ID, contract.getId())
+            .then()
+            .statusCode(200)
+            .extract()
+            .header("ETag");
+    assertThat(newETag).isNotEqualTo(etag);
+  }
+
   @Test
   public void testThatPutNonExistingEntityReturns404() {
     given().body(sampleContract).put(PATH_ID, UUID.randomUUID().toString()).then().statusCode(404);
@@ -256,6 +325,217 @@ public class IdmConnectContractApiIT {
     uuids.stream().limit(6).forEach(id -> given().get(PATH_ID, id).then().statusCode(404));
   }
 
+  @Test
+  public void testThatBulkDeleteKeepsContractsInTransmission(TestContext context) {
+    String id = UUID.randomUUID().toString();
+    Contract contract =
+        Json.decodeValue(Json.encode(sampleContract), Contract.class)
+            .withId(id)
+            .withStatus(Status.TRANSMISSION_IN_PROGRESS);
+    Async async = context.async();
+    PostgresClient.getInstance(vertx, TENANT)
+        .save(TABLE_NAME_CONTRACTS, id, contract)
+        .onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    assertThat(
+            given()
+                .body(new BulkDeleteRequest().withUuids(List.of(id)))
+                .post(PATH_BULK_DELETE)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkDeleteResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getRequested()).isEqualTo(1);
+              assertThat(resp.getDeleted()).isZero();
+              assertThat(resp.getFailedItems()).containsExactly(id);
+            });
+    given().get(PATH_ID, id).then().statusCode(200);
+  }
+
+  @Test
+  public void testThatBulkDeleteByQueryDeletesOnlyDrafts(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    assertThat(
+            given()
+                .body(new BulkDeleteRequest().withQuery("status==(draft or pending)"))
+                .post(PATH_BULK_DELETE)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkDeleteResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getRequested()).isEqualTo(10);
+              assertThat(resp.getDeleted()).isEqualTo(8);
+              assertThat(resp.getFailed()).isEqualTo(2);
+              assertThat(resp.getFailedItems()).hasSize(2).contains(PENDING.getId());
+            });
+
+    given().get(PATH_ID, DRAFT.getId()).then().statusCode(404);
+    given().get(PATH_ID, PENDING.getId()).then().statusCode(200);
+    assertThat(given().get().then().extract().as(Contracts.class).getTotalRecords()).isEqualTo(12);
+  }
+
+  @Test
+  public void testThatBulkDeleteWithInvalidQueryFails() {
+    given()
+        .body(new BulkDeleteRequest().withQuery("status==draft").withUuids(List.of(DRAFT.getId())))
+        .post(PATH_BULK_DELETE)
+        .then()
+        .statusCode(422);
+    given()
+        .body(new BulkDeleteRequest().withUuids(List.of()))
+        .post(PATH_BULK_DELETE)
+        .then()
+        .statusCode(422);
+    given()
+        .body(new BulkDeleteRequest().withQuery("status=="))
+        .post(PATH_BULK_DELETE)
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  public void testThatBulkDeleteCountsRepeatedIdsAsFailed() {
+    Contract contract =
+        given().body(sampleContract).post().then().statusCode(201).extract().as(Contract.class);
+    String id = contract.getId();
+
+    assertThat(
+            given()
+                .body(new BulkDeleteRequest().withUuids(List.of(id, id.toUpperCase())))
+                .post(PATH_BULK_DELETE)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkDeleteResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getRequested()).isEqualTo(2);
+              assertThat(resp.getDeleted()).isEqualTo(1);
+              assertThat(resp.getFailedItems()).containsExactly(id.toUpperCase());
+            });
+    given().get(PATH_ID, id).then().statusCode(404);
+  }
+
+  @Test
+  public void testThatBulkImportReportsFailedLines() {
+    String id = UUID.randomUUID().toString();
+    Contract contract = Json.decodeValue(Json.encode(sampleContract), Contract.class).withId(id);
+    String ndjson =
+        String.join(
+            "\n",
+            Json.encode(contract.withStatus(Status.PENDING)),
+            "{not json",
+            "",
+            Json.encode(new Contract().withPersonal(new Personal())),
+            Json.encode(contract),
+            Json.encode(contract.withId(null)));
+
+    assertThat(
+            given()
+                .contentType(ContentType.BINARY)
+                .body(ndjson.getBytes(StandardCharsets.UTF_8))
+                .post(PATH_BULK_IMPORT)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkImportResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getRequested()).isEqualTo(5);
+              assertThat(resp.getImported()).isEqualTo(2);
+              assertThat(resp.getFailed()).isEqualTo(3);
+              assertThat(resp.getFailedItems())
+                  .extracting(ImportFailure::getLine)
+                  .containsExactly(2, 4, 5);
+            });
+
+    assertThat(given().get(PATH_ID, id).then().statusCode(200).extract().as(Contract.class))
+        .satisfies(
+            c -> {
+              assertThat(c.getStatus()).isEqualTo(Status.DRAFT);
+              assertThat(c.getMetadata()).isNotNull();
+            });
+    assertThat(given().get().then().extract().as(Contracts.class).getTotalRecords()).isEqualTo(2);
+  }
+
+  @Test
+  public void testThatBulkImportStreamsLargeBody() {
+    // about 2 MB, so that the body arrives in many chunks and lines span chunks
+    int contracts = 3000;
+    Contract contract = Json.decodeValue(Json.encode(sampleContract), Contract.class);
+    StringBuilder ndjson = new StringBuilder();
+    for (int i = 0; i < contracts; i++) {
+      ndjson.append(Json.encode(contract.withId(UUID.randomUUID().toString()))).append('\n');
+    }
+    ndjson.append("x".repeat(2 * 1024 * 1024));
+
+    assertThat(
+            given()
+                .contentType(ContentType.BINARY)
+                .body(ndjson.toString().getBytes(StandardCharsets.UTF_8))
+                .post(PATH_BULK_IMPORT)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkImportResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getImported()).isEqualTo(contracts);
+              assertThat(resp.getFailedItems())
+                  .extracting(ImportFailure::getLine)
+                  .containsExactly(contracts + 1);
+            });
+    assertThat(given().get().then().extract().as(Contracts.class).getTotalRecords())
+        .isEqualTo(contracts);
+  }
+
+  @Test
+  public void testThatExportStreamsContracts(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    String ndjson =
+        given()
+            .basePath(BASE_PATH_EXPORT)
+            .queryParam("query", "status==draft sortBy personal.lastName")
+            .get()
+            .then()
+            .statusCode(200)
+            .contentType("application/x-ndjson")
+            .extract()
+            .asString();
+    List<Contract> contracts =
+        ndjson.lines().map(line -> Json.decodeValue(line, Contract.class)).toList();
+    assertThat(contracts)
+        .hasSize(8)
+        .allSatisfy(c -> assertThat(c.getStatus()).isEqualTo(Status.DRAFT));
+
+    String csv =
+        given()
+            .basePath(BASE_PATH_EXPORT)
+            .queryParam("format", "csv")
+            .get()
+            .then()
+            .statusCode(200)
+            .contentType(containsString("text/csv"))
+            .extract()
+            .asString();
+    assertThat(csv).startsWith("id,status,firstName,lastName,");
+    assertThat(csv.split("\r\n")).hasSize(21);
+
+    given().basePath(BASE_PATH_EXPORT).queryParam("format", "xml").get().then().statusCode(400);
+    given().basePath(BASE_PATH_EXPORT).queryParam("query", "status==").get().then().statusCode(400);
+  }
+
   @Test
   public void testThatUpdateWithConflictFails() {
     // POST a contract
@@ -283,4 +563,328 @@ public class IdmConnectContractApiIT {
       given().delete(PATH_ID, entity.getId()).then().statusCode(expectedStatusCode);
     }
   }
+
+  @Test
+  public void testThatDateRangeQueriesCompareDates(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    assertThat(
+            given()
+                .queryParam("query", "endDate>=2020-01-01 and endDate<2021-01-01")
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(Contracts.class)
+                .getContracts())
+        .extracting(Contract::getEndDate)
+        .hasSize(6)
+        .allMatch(endDate -> endDate.startsWith("2020-"));
+    assertThat(
+            given()
+                .queryParam("query", "beginDate>2019-01-01")
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(Contracts.class)
+                .getTotalRecords())
+        .isEqualTo(1);
+
+    try {
+      assertThat(
+              new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb")
+                  .toSql("endDate<2020-01-01")
+                  .getWhere())
+          .contains("normalize_iso_date(");
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Test
+  public void testThatDateFieldsSupportAllRelations(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+    String id = UUID.randomUUID().toString();
+    given()
+        .body(
+            Json.decodeValue(Json.encode(sampleContract), Contract.class)
+                .withId(id)
+                .withBeginDate("2018-01-12T08:00:00Z")
+                .withEndDate(null))
+        .post()
+        .then()
+        .statusCode(201);
+
+    assertThat(countContracts("beginDate==2018-01-12")).isEqualTo(2);
+    assertThat(countContracts("beginDate==2018*")).isEqualTo(7);
+    assertThat(countContracts("beginDate==*-01-12*")).isEqualTo(2);
+    assertThat(countContracts("beginDate=\"\"")).isEqualTo(21);
+    assertThat(countContracts("beginDate<>2018-01-12")).isEqualTo(19);
+    assertThat(countContracts("endDate==2020-01-12")).isEqualTo(1);
+    assertThat(countContracts("endDate==2020*")).isEqualTo(6);
+    assertThat(countContracts("endDate=\"\"")).isEqualTo(20);
+  }
+
+  private static int countContracts(String query) {
+    return given()
+        .queryParam("query", query)
+        .get()
+        .then()
+        .statusCode(200)
+        .extract()
+        .as(Contracts.class)
+        .getTotalRecords();
+  }
+
+  @Test
+  public void testThatTotalRecordsIsHonored(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    Contracts none =
+        given()
+            .queryParam("totalRecords", "none")
+            .queryParam("limit", 5)
+            .get()
+            .then()
+            .statusCode(200)
+            .extract()
+            .as(Contracts.class);
+    assertThat(none.getContracts()).hasSize(5);
+    assertThat(none.getTotalRecords()).isNull();
+
+    assertThat(
+            given()
+                .queryParam("totalRecords", "exact")
+                .queryParam("limit", 5)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(Contracts.class)
+                .getTotalRecords())
+        .isEqualTo(20);
+    assertThat(
+            given()
+                .queryParam("totalRecords", "estimated")
+                .queryParam("limit", 5)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(Contracts.class)
+                .getTotalRecords())
+        .isNotNull();
+  }
+
+  @Test
+  public void testThatCursorPagingReturnsEveryContractOnce(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+    // contracts without the sort field must be paged as well
+    for (int i = 0; i < 2; i++) {
+      given()
+          .body(
+              Json.decodeValue(Json.encode(sampleContract), Contract.class)
+                  .withId(UUID.randomUUID().toString())
+                  .withStatus(Status.DRAFT)
+                  .withUniLogin(null))
+          .post()
+          .then()
+          .statusCode(201);
+    }
+
+    for (String query :
+        List.of(
+            "cql.allRecords=1",
+            "status==draft sortBy uniLogin",
+            "status==draft sortBy uniLogin/sort.descending",
+            "cql.allRecords=1 sortBy endDate/sort.descending")) {
+      List<String> ids = new ArrayList<>();
+      int pages = 0;
+      String cursor = "*";
+      while (cursor != null) {
+        Contracts page =
+            given()
+                .queryParam("query", query)
+                .queryParam("cursor", cursor)
+                .queryParam("limit", 3)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(Contracts.class);
+        page.getContracts().forEach(contract -> ids.add(contract.getId()));
+        cursor = page.getNextCursor();
+        pages++;
+      }
+      Contracts all =
+          given()
+              .queryParam("query", query)
+              .queryParam("limit", 100)
+              .get()
+              .then()
+              .extract()
+              .as(Contracts.class);
+      assertThat(ids)
+          .as(query)
+          .doesNotHaveDuplicates()
+          .containsExactlyInAnyOrderElementsOf(
+              all.getContracts().stream().map(Contract::getId).toList());
+      assertThat(pages).as(query).isEqualTo(Math.max(1, (ids.size() + 2) / 3));
+    }
+  }
+
+  @Test
+  public void testThatInvalidCursorsAreRejected(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    String cursor =
+        given()
+            .queryParam("cursor", "*")
+            .queryParam("limit", 1)
+            .get()
+            .then()
+            .statusCode(200)
+            .extract()
+            .as(Contracts.class)
+            .getNextCursor();
+    given()
+        .queryParam("query", "cql.allRecords=1 sortBy uniLogin")
+        .queryParam("cursor", cursor)
+        .get()
+        .then()
+        .statusCode(400)
+        .body(containsString("sort order"));
+    given()
+        .queryParam("query", "cql.allRecords=1 sortBy personal.lastName")
+        .queryParam("cursor", "*")
+        .get()
+        .then()
+        .statusCode(400)
+        .body(containsString("personal.lastName"));
+    given().queryParam("cursor", "garbage").get().then().statusCode(400);
+    given().queryParam("cursor", "*").queryParam("offset", 10).get().then().statusCode(400);
+    given()
+        .queryParam("query", "cql.allRecords=1 sortBy endDate uniLogin")
+        .queryParam("cursor", "*")
+        .get()
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  public void testThatFieldsSelectsParts(TestContext context) {
+    Async async = context.async();
+    tenantUtil.setupTenant(true).onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    Contracts contracts =
+        given()
+            .queryParam("fields", "personal.lastName,uniLogin,status")
+            .queryParam("query", "status==draft sortBy uniLogin")
+            .queryParam("totalRecords", "exact")
+            .queryParam("limit", 3)
+            .get()
+            .then()
+            .statusCode(200)
+            .contentType(ContentType.JSON)
+            .extract()
+            .as(Contracts.class);
+    assertThat(contracts.getTotalRecords()).isEqualTo(8);
+    assertThat(contracts.getContracts())
+        .hasSize(3)
+        .allSatisfy(
+            contract -> {
+              assertThat(contract.getId()).isNotNull();
+              assertThat(contract.getStatus()).isEqualTo(Status.DRAFT);
+              assertThat(contract.getPersonal().getLastName()).isNotNull();
+              assertThat(contract.getPersonal().getFirstName()).isNull();
+              assertThat(contract.getLibraryCard()).isNull();
+              assertThat(contract.getMetadata()).isNull();
+            });
+
+    assertThat(
+            given()
+                .queryParam("fields", "status")
+                .queryParam("totalRecords", "none")
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(Contracts.class)
+                .getTotalRecords())
+        .isNull();
+    given().queryParam("fields", "status'").get().then().statusCode(400);
+    given().queryParam("fields", "status").queryParam("cursor", "*").get().then().statusCode(400);
+  }
+
+  @Test
+  public void testThatFieldsOmitsMissingParents(TestContext context) {
+    Async async = context.async();
+    String id = UUID.randomUUID().toString();
+    PostgresClient.getInstance(vertx, TENANT)
+        .save(TABLE_NAME_CONTRACTS, id, new Contract().withId(id).withStatus(Status.DRAFT))
+        .onComplete(context.asyncAssertSuccess(v -> async.complete()));
+    async.awaitSuccess();
+
+    JsonObject contract =
+        new JsonObject(
+                given()
+                    .queryParam("fields", "personal.lastName,personal.address.city,status")
+                    .queryParam("query", "id==" + id)
+                    .get()
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .asString())
+            .getJsonArray("contracts")
+            .getJsonObject(0);
+    assertThat(contract.getMap()).containsOnlyKeys("id", "status");
+  }
+
+  @Test
+  public void testThatSearchesCanUseIndexes(TestContext context) {
+    PostgresClient pgClient = PostgresClient.getInstance(vertx, TENANT);
+    String table = PostgresClient.convertToPsqlStandard(TENANT) + "." + TABLE_NAME_CONTRACTS;
+    for (String query : INDEXED_QUERIES) {
+      String where;
+      try {
+        where = new CQL2PgJSON(TABLE_NAME_CONTRACTS + ".jsonb").toSql(query).getWhere();
+      } catch (Exception e) {
+        throw new AssertionError(query, e);
+      }
+      // the table is almost empty, forbid sequential scans to see whether an index matches
+      pgClient
+          .withTrans(
+              conn ->
+                  conn.execute("SET LOCAL enable_seqscan = off")
+                      .compose(
+                          v ->
+                              conn.execute(
+                                  "EXPLAIN SELECT id FROM "
+                                      + table
+                                      + " "
+                                      + TABLE_NAME_CONTRACTS
+                                      + " WHERE "
+                                      + where)))
+          .onComplete(
+              context.asyncAssertSuccess(
+                  plan -> {
+                    StringBuilder text = new StringBuilder();
+                    plan.forEach(row -> text.append(row.getString(0)).append('\n'));
+                    context.verify(
+                        v -> assertThat(text.toString()).as(query).contains("Index Scan"));
+                  }));
+    }
+  }
 }
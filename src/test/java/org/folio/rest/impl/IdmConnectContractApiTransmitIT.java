@@ -10,6 +10,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.folio.idmconnect.Constants.PATH_BULK_TRANSMIT;
 import static org.folio.utils.TestConstants.CONNECTION_REFUSED;
 import static org.folio.utils.TestConstants.HOST;
 import static org.folio.utils.TestConstants.IDM_TOKEN;
@@ -30,20 +31,37 @@ import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.github.tomakehurst.wiremock.http.Fault;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import io.restassured.RestAssured;
 import io.vertx.core.Vertx;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.sqlclient.Tuple;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.folio.idmconnect.ContractTransmitter;
 import org.folio.idmconnect.IdmClientConfig;
 import org.folio.idmconnect.IdmClientFactory;
+import org.folio.idmconnect.IdmOperation;
+import org.folio.idmconnect.RetryConfig;
+import org.folio.idmconnect.TransmissionOutbox;
 import org.folio.postgres.testing.PostgresTesterContainer;
 import org.folio.rest.client.TenantClient;
+import org.folio.rest.jaxrs.model.BulkTransmitRequest;
+import org.folio.rest.jaxrs.model.BulkTransmitResponse;
 import org.folio.rest.jaxrs.model.Contract;
+import org.folio.rest.jaxrs.model.Contract.Status;
+import org.folio.rest.jaxrs.model.Contracts;
 import org.folio.rest.persist.PostgresClient;
 import org.folio.rest.tools.utils.NetworkUtils;
 import org.folio.rest.tools.utils.VertxUtils;
 import org.folio.utils.TenantUtil;
+import org.folio.utils.TestEntities;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -185,12 +203,38 @@ public class IdmConnectContractApiTransmitIT {
 
   @Test
   public void testStatusUpdateOnFailedTransmit500() {
+    // count each transmission once
+    IdmClientFactory.setIdmClientConfig(
+        new IdmClientConfig.Builder()
+            .idmContractUrl(idmApiMock.baseUrl())
+            .idmRetry(IdmOperation.PUT_CONTRACT, new RetryConfig(1, 0, 0))
+            .build());
     stubFor(put(urlEqualTo("/")).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
     stubFor(
         post(urlEqualTo("/")).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
     assertSampleDataOnFailedTransmit(500);
   }
 
+  @Test
+  public void testTransientFailureOfUpdateIsRetried() {
+    stubFor(
+        put(urlEqualTo("/"))
+            .inScenario("retry")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withStatus(503))
+            .willSetStateTo("available"));
+    stubFor(
+        put(urlEqualTo("/"))
+            .inScenario("retry")
+            .whenScenarioStateIs("available")
+            .willReturn(aResponse().withStatus(200)));
+
+    given().get(PATH_TRANSMIT, UPDATED.getId()).then().statusCode(200);
+    verify(2, putRequestedFor(urlEqualTo("/")));
+    assertThat(given().get(PATH_ID, UPDATED.getId()).as(Contract.class).getStatus())
+        .isEqualTo(UPDATED.getSucceededStatus());
+  }
+
   @Test
   public void testStatusUpdateOnFailedTransmitNoEnvVar() {
     IdmClientFactory.setIdmClientConfig(new IdmClientConfig.Builder().build());
@@ -204,6 +248,310 @@ public class IdmConnectContractApiTransmitIT {
         .isEqualTo(UPDATED.getFailedStatus());
   }
 
+  @Test
+  public void testTransmitNonExistingContractReturns404() {
+    given().get(PATH_TRANSMIT, UUID.randomUUID().toString()).then().statusCode(404);
+  }
+
+  @Test
+  public void testNoConnectionIsHeldWhileWaitingForIdm() throws Exception {
+    // with a row lock held during the IDM call, six concurrent transmits would exhaust the
+    // database connection pool and the requests below would wait for the IDM
+    ExecutorService executor = Executors.newFixedThreadPool(TestEntities.values().length);
+    try {
+      for (int idmDelay : List.of(1000, 3000)) {
+        stubFor(
+            put(urlEqualTo("/")).willReturn(aResponse().withStatus(200).withFixedDelay(idmDelay)));
+        stubFor(
+            post(urlEqualTo("/")).willReturn(aResponse().withStatus(200).withFixedDelay(idmDelay)));
+
+        List<CompletableFuture<Integer>> transmits =
+            Arrays.stream(TestEntities.values())
+                .map(
+                    entity ->
+                        CompletableFuture.supplyAsync(
+                            () -> given().get(PATH_TRANSMIT, entity.getId()).statusCode(),
+                            executor))
+                .toList();
+        awaitContractsInProgress(TestEntities.values().length, idmDelay);
+
+        given().get(PATH_TRANSMIT, DRAFT.getId()).then().statusCode(409);
+        given().get(PATH_ID, PENDING.getId()).then().statusCode(200);
+        assertThat(transmits).noneMatch(CompletableFuture::isDone);
+
+        CompletableFuture.allOf(transmits.toArray(CompletableFuture[]::new)).get();
+        assertThat(transmits).allSatisfy(transmit -> assertThat(transmit.get()).isEqualTo(200));
+        assertThat(countContractsInProgress()).isZero();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testContractInTransmissionCannotBeChanged() throws Exception {
+    stubFor(put(urlEqualTo("/")).willReturn(aResponse().withStatus(200).withFixedDelay(2000)));
+    CompletableFuture<Integer> transmit =
+        CompletableFuture.supplyAsync(
+            () -> given().get(PATH_TRANSMIT, UPDATED.getId()).statusCode());
+    awaitContractStatus(UPDATED.getId(), Status.TRANSMISSION_IN_PROGRESS, 2000);
+
+    Contract contract = given().get(PATH_ID, UPDATED.getId()).as(Contract.class);
+    given()
+        .body(contract.withStatus(Status.UPDATED))
+        .put(PATH_ID, UPDATED.getId())
+        .then()
+        .statusCode(409)
+        .body(containsString(ContractTransmitter.MSG_IN_PROGRESS));
+
+    assertThat(transmit.get()).isEqualTo(200);
+    assertThat(given().get(PATH_ID, UPDATED.getId()).as(Contract.class).getStatus())
+        .isEqualTo(UPDATED.getSucceededStatus());
+  }
+
+  @Test
+  public void testStatusInProgressCannotBeSet() {
+    Contract contract = given().get(PATH_ID, DRAFT.getId()).as(Contract.class);
+    given()
+        .body(contract.withStatus(Status.TRANSMISSION_IN_PROGRESS))
+        .put(PATH_ID, DRAFT.getId())
+        .then()
+        .statusCode(422);
+  }
+
+  @Test
+  public void testExpiredClaimIsClaimedAgain() throws Exception {
+    stubFor(put(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+    stubFor(post(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+    // a transmission of UPDATED whose instance died, and a claim without outbox entry
+    String schema = PostgresClient.convertToPsqlStandard(TENANT);
+    PostgresClient pgClient = PostgresClient.getInstance(vertx, TENANT);
+    pgClient
+        .execute(
+            "UPDATE "
+                + schema
+                + ".contract SET jsonb = jsonb_set(jsonb, '{status}',"
+                + " '\"transmission_in_progress\"') WHERE id = ANY($1)",
+            Tuple.of(new UUID[] {UUID.fromString(UPDATED.getId()), UUID.fromString(DRAFT.getId())}))
+        .compose(
+            v ->
+                pgClient.execute(
+                    "INSERT INTO "
+                        + schema
+                        + ".transmission_outbox (contract_id, previous_status, locked_until)"
+                        + " VALUES ($1, 'updated', now() - interval '1 second')",
+                    Tuple.of(UUID.fromString(UPDATED.getId()))))
+        .toCompletionStage()
+        .toCompletableFuture()
+        .get();
+
+    given().get(PATH_TRANSMIT, UPDATED.getId()).then().statusCode(200);
+    verify(1, putRequestedFor(urlEqualTo("/")));
+    assertThat(given().get(PATH_ID, UPDATED.getId()).as(Contract.class).getStatus())
+        .isEqualTo(UPDATED.getSucceededStatus());
+
+    given().get(PATH_TRANSMIT, DRAFT.getId()).then().statusCode(200);
+    verify(1, postRequestedFor(urlEqualTo("/")));
+    assertThat(given().get(PATH_ID, DRAFT.getId()).as(Contract.class).getStatus())
+        .isEqualTo(DRAFT.getSucceededStatus());
+  }
+
+  @Test
+  public void testTakenOverTransmissionCannotOverwriteResult() throws Exception {
+    stubFor(
+        put(urlEqualTo("/"))
+            .inScenario("takeover")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withStatus(200).withFixedDelay(1000))
+            .willSetStateTo("taken over"));
+    stubFor(
+        put(urlEqualTo("/"))
+            .inScenario("takeover")
+            .whenScenarioStateIs("taken over")
+            .willReturn(aResponse().withStatus(404).withFixedDelay(2000)));
+    CompletableFuture<Integer> stale =
+        CompletableFuture.supplyAsync(
+            () -> given().get(PATH_TRANSMIT, UPDATED.getId()).statusCode());
+    awaitContractStatus(UPDATED.getId(), Status.TRANSMISSION_IN_PROGRESS, 2000);
+    // the lease of the first transmission expires while it waits for the IDM
+    PostgresClient.getInstance(vertx, TENANT)
+        .execute(
+            "UPDATE "
+                + PostgresClient.convertToPsqlStandard(TENANT)
+                + ".transmission_outbox SET locked_until = now() - interval '1 second'")
+        .toCompletionStage()
+        .toCompletableFuture()
+        .get();
+
+    CompletableFuture<Integer> takeover =
+        CompletableFuture.supplyAsync(
+            () -> given().get(PATH_TRANSMIT, UPDATED.getId()).statusCode());
+
+    assertThat(stale.get()).isEqualTo(200);
+    assertThat(given().get(PATH_ID, UPDATED.getId()).as(Contract.class).getStatus())
+        .isEqualTo(Status.TRANSMISSION_IN_PROGRESS);
+    assertThat(takeover.get()).isEqualTo(404);
+    assertThat(given().get(PATH_ID, UPDATED.getId()).as(Contract.class).getStatus())
+        .isEqualTo(UPDATED.getFailedStatus());
+  }
+
+  @Test
+  public void testBulkTransmitByUuids() {
+    stubFor(put(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+    stubFor(post(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+    String nonExistingId = UUID.randomUUID().toString();
+    String invalidId = "'" + DRAFT.getId() + "'";
+    List<String> uuids = List.of(DRAFT.getId(), UPDATED.getId(), nonExistingId, invalidId);
+
+    assertThat(
+            given()
+                .body(new BulkTransmitRequest().withUuids(uuids))
+                .post(PATH_BULK_TRANSMIT)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkTransmitResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getRequested()).isEqualTo(4);
+              assertThat(resp.getTransmitted()).isEqualTo(2);
+              assertThat(resp.getFailed()).isEqualTo(2);
+              assertThat(resp.getFailedItems()).containsExactlyInAnyOrder(nonExistingId, invalidId);
+            });
+    verify(1, postRequestedFor(urlEqualTo("/")));
+    verify(1, putRequestedFor(urlEqualTo("/")));
+    assertThat(given().get(PATH_ID, DRAFT.getId()).as(Contract.class).getStatus())
+        .isEqualTo(DRAFT.getSucceededStatus());
+    assertThat(given().get(PATH_ID, UPDATED.getId()).as(Contract.class).getStatus())
+        .isEqualTo(UPDATED.getSucceededStatus());
+  }
+
+  @Test
+  public void testBulkTransmitByQuery() {
+    stubFor(put(urlEqualTo("/")).willReturn(aResponse().withStatus(500)));
+    stubFor(post(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+    int drafts = countContracts(Status.DRAFT);
+    int pending = countContracts(Status.PENDING);
+    int updated = countContracts(Status.UPDATED);
+    int transmissionErrorEdit = countContracts(Status.TRANSMISSION_ERROR_EDIT);
+
+    assertThat(
+            given()
+                .body(new BulkTransmitRequest().withQuery("status==(draft or updated)"))
+                .post(PATH_BULK_TRANSMIT)
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(BulkTransmitResponse.class))
+        .satisfies(
+            resp -> {
+              assertThat(resp.getRequested()).isEqualTo(drafts + updated);
+              assertThat(resp.getTransmitted()).isEqualTo(drafts);
+              assertThat(resp.getFailed()).isEqualTo(updated);
+            });
+    verify(drafts, postRequestedFor(urlEqualTo("/")));
+    verify(updated, putRequestedFor(urlEqualTo("/")));
+    assertThat(countContracts(Status.DRAFT)).isZero();
+    assertThat(countContracts(Status.UPDATED)).isZero();
+    assertThat(countContracts(Status.PENDING)).isEqualTo(pending + drafts);
+    assertThat(countContracts(Status.TRANSMISSION_ERROR_EDIT))
+        .isEqualTo(transmissionErrorEdit + updated);
+  }
+
+  @Test
+  public void testBulkTransmitWithInvalidRequestFails() {
+    given().body(new BulkTransmitRequest()).post(PATH_BULK_TRANSMIT).then().statusCode(422);
+    given()
+        .body(
+            new BulkTransmitRequest().withQuery("status==draft").withUuids(List.of(DRAFT.getId())))
+        .post(PATH_BULK_TRANSMIT)
+        .then()
+        .statusCode(422);
+    given()
+        .body(new BulkTransmitRequest().withQuery("status=="))
+        .post(PATH_BULK_TRANSMIT)
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  public void testAsyncTransmit() throws InterruptedException {
+    stubFor(post(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+    stubFor(put(urlEqualTo("/")).willReturn(aResponse().withStatus(400)));
+
+    given()
+        .queryParam("async", true)
+        .get(PATH_TRANSMIT, DRAFT.getId())
+        .then()
+        .statusCode(202)
+        .body(containsString(TransmissionOutbox.MSG_SCHEDULED));
+    given().queryParam("async", true).get(PATH_TRANSMIT, PENDING.getId()).then().statusCode(202);
+    given()
+        .queryParam("async", true)
+        .get(PATH_TRANSMIT, UUID.randomUUID().toString())
+        .then()
+        .statusCode(404);
+
+    awaitContractStatus(DRAFT.getId(), Status.PENDING, 10000);
+    awaitContractStatus(PENDING.getId(), Status.TRANSMISSION_ERROR_EDIT, 10000);
+    verify(1, postRequestedFor(urlEqualTo("/")));
+    verify(1, putRequestedFor(urlEqualTo("/")));
+  }
+
+  @Test
+  public void testAsyncTransmitIsRetried() throws InterruptedException {
+    stubFor(
+        post(urlEqualTo("/"))
+            .inScenario("retry")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withStatus(503))
+            .willSetStateTo("available"));
+    stubFor(
+        post(urlEqualTo("/"))
+            .inScenario("retry")
+            .whenScenarioStateIs("available")
+            .willReturn(aResponse().withStatus(200)));
+
+    given().queryParam("async", true).get(PATH_TRANSMIT, DRAFT.getId()).then().statusCode(202);
+    given().queryParam("async", true).get(PATH_TRANSMIT, DRAFT.getId()).then().statusCode(409);
+
+    awaitContractStatus(DRAFT.getId(), Status.PENDING, 10000);
+    verify(2, postRequestedFor(urlEqualTo("/")));
+  }
+
+  private void awaitContractStatus(String id, Status expected, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (given().get(PATH_ID, id).as(Contract.class).getStatus() != expected) {
+      assertThat(System.currentTimeMillis()).isLessThan(deadline);
+      Thread.sleep(50);
+    }
+  }
+
+  private int countContractsInProgress() {
+    return countContracts(Status.TRANSMISSION_IN_PROGRESS);
+  }
+
+  private int countContracts(Status status) {
+    return given()
+        .queryParam("query", "status==" + status.value())
+        .get()
+        .then()
+        .statusCode(200)
+        .extract()
+        .as(Contracts.class)
+        .getTotalRecords();
+  }
+
+  private void awaitContractsInProgress(int expected, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (countContractsInProgress() < expected) {
+      assertThat(System.currentTimeMillis()).isLessThan(deadline);
+      Thread.sleep(50);
+    }
+  }
+
   @Test
   public void testIdmApiNotAvailable() {
     String unavailableUrl = HOST + ":" + NetworkUtils.nextFreePort();
@@ -4,18 +4,25 @@ import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.absent;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static io.restassured.RestAssured.given;
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static javax.ws.rs.core.HttpHeaders.CACHE_CONTROL;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.folio.idmconnect.Constants.BASE_PATH_METRICS;
 import static org.folio.idmconnect.Constants.BASE_PATH_SEARCHIDM;
 import static org.folio.idmconnect.Constants.MSG_IDM_URL_NOT_SET;
 import static org.folio.utils.TestConstants.CONNECTION_REFUSED;
 import static org.folio.utils.TestConstants.HOST;
 import static org.folio.utils.TestConstants.IDM_TOKEN;
+import static org.folio.utils.TestConstants.TENANT;
 import static org.folio.utils.TestConstants.deployRestVerticle;
 import static org.folio.utils.TestConstants.setupRestAssured;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.notNullValue;
 
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
@@ -24,8 +31,14 @@ import io.vertx.core.Vertx;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import java.util.Map;
+import org.folio.idmconnect.CircuitBreakerConfig;
 import org.folio.idmconnect.IdmClientConfig;
 import org.folio.idmconnect.IdmClientFactory;
+import org.folio.idmconnect.IdmOperation;
+import org.folio.idmconnect.RetryConfig;
+import org.folio.idmconnect.TenantLimitConfig;
+import org.folio.rest.jaxrs.model.CircuitBreakerState;
+import org.folio.rest.jaxrs.model.IdmMetrics;
 import org.folio.rest.tools.utils.NetworkUtils;
 import org.folio.rest.tools.utils.VertxUtils;
 import org.junit.AfterClass;
@@ -126,11 +139,129 @@ public class IdmConnectSearchidmApiIT {
         .isEqualTo("[]");
   }
 
+  @Test
+  public void testRepeatedRequestIsCached() {
+    IdmClientFactory.setIdmClientConfig(
+        new IdmClientConfig.Builder().idmUrl(IDM_MOCK_URL).idmToken(IDM_TOKEN).build());
+    idmApiMock.resetRequests();
+    Map<String, String> queryParams =
+        Map.of("firstName", "John", "lastName", "Doe", "dateOfBirth", "1998-12-24");
+
+    given().queryParams(queryParams).get().then().statusCode(200);
+    given().queryParams(queryParams).get().then().statusCode(200).body(containsString("[]"));
+    idmApiMock.verify(1, getRequestedFor(urlPathEqualTo(BASE_PATH_SEARCHIDM)));
+
+    given().header(CACHE_CONTROL, "no-cache").queryParams(queryParams).get().then().statusCode(200);
+    idmApiMock.verify(2, getRequestedFor(urlPathEqualTo(BASE_PATH_SEARCHIDM)));
+
+    assertThat(
+            given()
+                .basePath(BASE_PATH_METRICS)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(IdmMetrics.class)
+                .getSearchCache())
+        .satisfies(
+            searchCache -> {
+              assertThat(searchCache.getHits()).isEqualTo(1L);
+              assertThat(searchCache.getMisses()).isEqualTo(1L);
+              assertThat(searchCache.getSize()).isEqualTo(1);
+            });
+  }
+
   @Test
   public void testIdmApiNotAvailable() {
     String unavailableUrl = HOST + ":" + NetworkUtils.nextFreePort();
     IdmClientFactory.setIdmClientConfig(
         new IdmClientConfig.Builder().idmUrl(unavailableUrl).build());
     given().get().then().statusCode(500).body(containsString(CONNECTION_REFUSED));
+
+    assertThat(
+            given()
+                .basePath(BASE_PATH_METRICS)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(IdmMetrics.class)
+                .getRetries())
+        .satisfies(
+            retries -> {
+              assertThat(retries.getRetries()).isEqualTo(2L);
+              assertThat(retries.getRecovered()).isZero();
+              assertThat(retries.getExhausted()).isEqualTo(1L);
+              assertThat(retries.getRejected()).isZero();
+            });
+  }
+
+  @Test
+  public void testCircuitBreakerOpensWhenIdmNotAvailable() {
+    String unavailableUrl = HOST + ":" + NetworkUtils.nextFreePort();
+    IdmClientFactory.setIdmClientConfig(
+        new IdmClientConfig.Builder()
+            .idmUrl(unavailableUrl)
+            .idmCircuitBreaker(IdmOperation.SEARCH, new CircuitBreakerConfig(2, 60000, 0))
+            .idmRetry(IdmOperation.SEARCH, new RetryConfig(1, 0, 0))
+            .build());
+    given().get().then().statusCode(500).body(containsString(CONNECTION_REFUSED));
+    given().get().then().statusCode(500).body(containsString(CONNECTION_REFUSED));
+    given().get().then().statusCode(503).header(RETRY_AFTER, notNullValue());
+
+    assertThat(
+            given()
+                .basePath(BASE_PATH_METRICS)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(IdmMetrics.class)
+                .getCircuitBreakers())
+        .hasSize(IdmOperation.values().length)
+        .extracting(
+            CircuitBreakerState::getOperation,
+            CircuitBreakerState::getState,
+            CircuitBreakerState::getFailures,
+            CircuitBreakerState::getRejected)
+        .contains(tuple("SEARCH", "OPEN", 2, 1L));
+  }
+
+  @Test
+  public void testTenantOverRateLimitIsRejected() {
+    IdmClientFactory.setIdmClientConfig(
+        new IdmClientConfig.Builder()
+            .idmUrl(IDM_MOCK_URL)
+            .idmToken(IDM_TOKEN)
+            .idmTenantLimit(new TenantLimitConfig(0, 1, 1))
+            .build());
+    Map<String, String> queryParams =
+        Map.of("firstName", "John", "lastName", "Doe", "dateOfBirth", "1998-12-24");
+
+    given().queryParams(queryParams).get().then().statusCode(200);
+    given()
+        .header(CACHE_CONTROL, "no-cache")
+        .queryParams(queryParams)
+        .get()
+        .then()
+        .statusCode(429)
+        .header(RETRY_AFTER, "1")
+        .body(containsString(TENANT));
+
+    assertThat(
+            given()
+                .basePath(BASE_PATH_METRICS)
+                .get()
+                .then()
+                .statusCode(200)
+                .extract()
+                .as(IdmMetrics.class)
+                .getTenantLimits())
+        .satisfies(
+            tenantLimits -> {
+              assertThat(tenantLimits.getInFlight()).isZero();
+              assertThat(tenantLimits.getBulkheadRejected()).isZero();
+              assertThat(tenantLimits.getRateLimited()).isEqualTo(1L);
+            });
   }
 }
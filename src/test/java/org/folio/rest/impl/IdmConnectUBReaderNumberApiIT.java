@@ -16,6 +16,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.folio.idmconnect.Constants.BASE_PATH_CONTRACTS;
 import static org.folio.idmconnect.Constants.BASE_PATH_READER_NUMDER;
 import static org.folio.idmconnect.Constants.MSG_IDM_READER_NUMBER_URL_NOT_SET;
+import static org.folio.idmconnect.Constants.TABLE_NAME_CONTRACTS;
 import static org.folio.utils.TestConstants.CONNECTION_REFUSED;
 import static org.folio.utils.TestConstants.HOST;
 import static org.folio.utils.TestConstants.IDM_TOKEN;
@@ -35,6 +36,10 @@ import io.vertx.core.Vertx;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import java.util.List;
 import java.util.Map;
 import org.folio.idmconnect.IdmClientConfig;
 import org.folio.idmconnect.IdmClientFactory;
@@ -70,6 +75,7 @@ public class IdmConnectUBReaderNumberApiIT {
   private static final ResponseDefinition failureResponseDefinition =
       ResponseDefinitionBuilder.jsonResponse("{ \"result\": \"failure\"}", 400);
 
+  private static Vertx vertx;
   private static TenantUtil tenantUtil;
   private static String idmApiMockUrl;
 
@@ -79,7 +85,7 @@ public class IdmConnectUBReaderNumberApiIT {
 
   @BeforeClass
   public static void beforeClass(TestContext context) {
-    Vertx vertx = VertxUtils.getVertxFromContextOrNew();
+    vertx = VertxUtils.getVertxFromContextOrNew();
     int port = NetworkUtils.nextFreePort();
     idmApiMockUrl = idmApiMock.baseUrl() + MOCK_BASE_PATH;
     setupRestAssured(port, BASE_PATH_READER_NUMDER);
@@ -238,6 +244,37 @@ public class IdmConnectUBReaderNumberApiIT {
     assertThatLibraryCardEquals(null);
   }
 
+  @Test
+  public void testUpdateLibraryCardUsesUniLoginIndex(TestContext context) {
+    PostgresClient pgClient = PostgresClient.getInstance(vertx, TENANT);
+    String table = PostgresClient.convertToPsqlStandard(TENANT) + "." + TABLE_NAME_CONTRACTS;
+    // the table is almost empty, forbid sequential scans to see whether the index matches
+    for (boolean set : List.of(true, false)) {
+      Tuple params = set ? Tuple.of("login4711", READER_NUMBER_VALUE) : Tuple.of("login4711");
+      pgClient
+          .withTrans(
+              conn ->
+                  conn.execute("SET LOCAL enable_seqscan = off")
+                      .compose(
+                          v ->
+                              conn.execute(
+                                  "EXPLAIN " + IdmConnectApi.createUpdateLibraryCardSql(table, set),
+                                  params)))
+          .onComplete(context.asyncAssertSuccess(plan -> assertIndexScan(context, plan)));
+    }
+  }
+
+  private static void assertIndexScan(TestContext context, RowSet<Row> plan) {
+    StringBuilder text = new StringBuilder();
+    plan.forEach(row -> text.append(row.getString(0)).append('\n'));
+    context.verify(
+        v ->
+            assertThat(text.toString())
+                .contains("Index Scan")
+                .containsIgnoringCase("unilogin_idx")
+                .doesNotContain("Seq Scan"));
+  }
+
   @Test
   public void testIdmApiNotAvailable() {
     String unvailableUrl = HOST + ":" + NetworkUtils.nextFreePort();